@@ -0,0 +1,59 @@
+package com.benchmarks;
+
+import com.accessChecker.AccessChecker;
+import com.accessChecker.RolesHeader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Разбор X-User-Roles и проверки доступа - работа, которая выполняется на каждом запросе
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessBenchmark {
+
+    @Param({"ROLE_USER", "ROLE_ADMIN, ROLE_USER"})
+    private String rolesHeader;
+
+    private final AccessChecker accessChecker = new AccessChecker();
+
+    private Set<String> roles;
+    private List<Long> ownIds;
+
+    @Setup
+    public void setup() {
+        roles = RolesHeader.parse(rolesHeader);
+        ownIds = List.of(1L, 1L, 1L, 1L, 1L);
+    }
+
+    @Benchmark
+    public Set<String> parseRoles() {
+        return RolesHeader.parse(rolesHeader);
+    }
+
+    @Benchmark
+    public void checkUserAccess(Blackhole bh) {
+        accessChecker.checkUserAccess(1L, 1L, roles);
+        bh.consume(roles);
+    }
+
+    @Benchmark
+    public void checkUsersAccess(Blackhole bh) {
+        accessChecker.checkUsersAccess(ownIds, 1L, roles);
+        bh.consume(ownIds);
+    }
+
+    // полный путь контроллер -> сервис: разбор заголовка + проверка
+    @Benchmark
+    public void parseAndCheck(Blackhole bh) {
+        Set<String> parsed = RolesHeader.parse(rolesHeader);
+        accessChecker.checkUserAccess(1L, 1L, parsed);
+        bh.consume(parsed);
+    }
+}
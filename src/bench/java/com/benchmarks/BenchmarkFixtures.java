@@ -0,0 +1,66 @@
+package com.benchmarks;
+
+import com.dto.PaymentCardDto;
+import com.dto.UserDto;
+import com.entities.PaymentCard;
+import com.entities.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Типичные объекты одного ответа: пользователь с несколькими картами
+final class BenchmarkFixtures {
+
+    static final int CARDS_PER_USER = 3;
+
+    private BenchmarkFixtures() {
+    }
+
+    static User user(long id) {
+        User user = User.builder()
+                .id(id)
+                .name("John")
+                .surname("Doe")
+                .email("john" + id + "@example.com")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .active(true)
+                .build();
+        List<PaymentCard> cards = new ArrayList<>(CARDS_PER_USER);
+        for (int i = 0; i < CARDS_PER_USER; i++) {
+            cards.add(PaymentCard.builder()
+                    .id(id * 10 + i)
+                    .number("411111111111111" + i)
+                    .holder("JOHN DOE")
+                    .expirationDate(LocalDate.of(2030, 12, 31))
+                    .active(true)
+                    .user(user)
+                    .build());
+        }
+        user.setPaymentCards(cards);
+        return user;
+    }
+
+    static UserDto userDto(long id) {
+        List<PaymentCardDto> cards = new ArrayList<>(CARDS_PER_USER);
+        for (int i = 0; i < CARDS_PER_USER; i++) {
+            cards.add(PaymentCardDto.builder()
+                    .id(id * 10 + i)
+                    .number("411111111111111" + i)
+                    .holder("JOHN DOE")
+                    .expirationDate(LocalDate.of(2030, 12, 31))
+                    .active(true)
+                    .userId(id)
+                    .build());
+        }
+        return UserDto.builder()
+                .id(id)
+                .name("John")
+                .surname("Doe")
+                .email("john" + id + "@example.com")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .active(true)
+                .paymentCards(cards)
+                .build();
+    }
+}
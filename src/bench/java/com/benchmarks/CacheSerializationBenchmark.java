@@ -0,0 +1,62 @@
+package com.benchmarks;
+
+import com.cache.CacheValueCodec;
+import com.dto.PaymentCardDto;
+import com.dto.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+// Сериализация значений кеша в Redis: JDK (по умолчанию у RedisCacheManager) против CacheValueCodec
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheSerializationBenchmark {
+
+    @Param({"jdk", "codec"})
+    private String format;
+
+    private RedisSerializer<Object> serializer;
+
+    private UserDto user;
+    private PaymentCardDto card;
+    private byte[] userBytes;
+    private byte[] cardBytes;
+
+    @Setup
+    public void setup() {
+        serializer = "codec".equals(format)
+                ? new CacheValueCodec("bench", new SimpleMeterRegistry(), getClass().getClassLoader())
+                : new JdkSerializationRedisSerializer(getClass().getClassLoader());
+        user = BenchmarkFixtures.userDto(1L);
+        card = user.getPaymentCards().getFirst();
+        userBytes = serializer.serialize(user);
+        cardBytes = serializer.serialize(card);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() {
+        return serializer.serialize(user);
+    }
+
+    @Benchmark
+    public Object deserializeUser() {
+        return serializer.deserialize(userBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeCard() {
+        return serializer.serialize(card);
+    }
+
+    @Benchmark
+    public Object deserializeCard() {
+        return serializer.deserialize(cardBytes);
+    }
+}
@@ -0,0 +1,77 @@
+package com.benchmarks;
+
+import com.dto.PaymentCardDto;
+import com.dto.UserDto;
+import com.entities.PaymentCard;
+import com.entities.User;
+import com.mappers.PaymentCardMapper;
+import com.mappers.PaymentCardMapperImpl;
+import com.mappers.UserMapper;
+import com.mappers.UserMapperImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"20"})
+    private int pageSize;
+
+    private UserMapper userMapper;
+    private PaymentCardMapper cardMapper;
+
+    private User user;
+    private List<User> page;
+    private PaymentCard card;
+    private UserDto userDto;
+
+    @Setup
+    public void setup() {
+        cardMapper = new PaymentCardMapperImpl();
+        userMapper = new UserMapperImpl();
+        // spring-компонент без контекста: зависимость проставляем руками
+        ReflectionTestUtils.setField(userMapper, "paymentCardMapper", cardMapper);
+
+        user = BenchmarkFixtures.user(1L);
+        card = user.getPaymentCards().getFirst();
+        userDto = BenchmarkFixtures.userDto(1L);
+        page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            page.add(BenchmarkFixtures.user(i + 1L));
+        }
+    }
+
+    @Benchmark
+    public UserDto userToDto() {
+        return userMapper.toDto(user);
+    }
+
+    @Benchmark
+    public UserDto userToSummaryDto() {
+        return userMapper.toSummaryDto(user);
+    }
+
+    @Benchmark
+    public List<UserDto> userPageToDtos() {
+        return userMapper.toDtoUserList(page);
+    }
+
+    @Benchmark
+    public User dtoToUser() {
+        return userMapper.toEntity(userDto);
+    }
+
+    @Benchmark
+    public PaymentCardDto cardToDto() {
+        return cardMapper.toPaymentDto(card);
+    }
+}
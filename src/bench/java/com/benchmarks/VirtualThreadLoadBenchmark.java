@@ -0,0 +1,140 @@
+package com.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Нагрузочное сравнение двух запущенных экземпляров сервиса:
+// один с spring.threads.virtual.enabled=false, другой с true.
+//
+//   mvn -Pbench test-compile exec:java@load \
+//       -Dexec.args="--platform=http://localhost:8082 --virtual=http://localhost:8083 --path=/users/1"
+//
+// Закрытый цикл: --concurrency клиентов шлют запросы без пауз в течение --seconds,
+// первые --warmup секунд не учитываются. Печатает throughput, p50, p99 и долю ошибок.
+public class VirtualThreadLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String path = options.getOrDefault("path", "/users/1");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "500"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        String userId = options.getOrDefault("user-id", "1");
+        String roles = options.getOrDefault("roles", "ROLE_ADMIN");
+
+        Map<String, String> targets = new LinkedHashMap<>();
+        if (options.containsKey("platform")) {
+            targets.put("platform", options.get("platform"));
+        }
+        if (options.containsKey("virtual")) {
+            targets.put("virtual", options.get("virtual"));
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("Specify --platform=<baseUrl> and/or --virtual=<baseUrl>");
+        }
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-10s %12s %10s %10s %10s", "mode", "req/s", "p50 ms", "p99 ms", "errors"));
+        for (Map.Entry<String, String> target : targets.entrySet()) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(target.getValue() + path))
+                    .header("X-User-Id", userId)
+                    .header("X-User-Roles", roles)
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            run(request, concurrency, warmup);
+            Result result = run(request, concurrency, seconds);
+            report.add(String.format("%-10s %12.1f %10.2f %10.2f %10d", target.getKey(),
+                    result.throughput(), result.percentileMillis(0.50), result.percentileMillis(0.99), result.errors()));
+        }
+        report.forEach(System.out::println);
+    }
+
+    private static Result run(HttpRequest request, int concurrency, int seconds) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+
+        List<Future<long[]>> workers = new ArrayList<>(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception ex) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        } finally {
+            client.close();
+        }
+
+        int total = 0;
+        List<long[]> parts = new ArrayList<>(concurrency);
+        for (Future<long[]> worker : workers) {
+            long[] part = worker.get();
+            parts.add(part);
+            total += part.length;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, offset, part.length);
+            offset += part.length;
+        }
+        Arrays.sort(all);
+        return new Result(all, (double) total / seconds, errors.get());
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int separator = arg.indexOf('=');
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private record Result(long[] sortedLatencies, double throughput, long errors) {
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package com.accessChecker;
 
+import com.enums.Role;
 import org.springframework.stereotype.Component;
 
 
+import java.util.Collection;
 import java.util.Set;
 
+// Роли приходят как RoleSet (из заголовка или токена) - проверки сводятся к операциям над маской
 @Component
 public class AccessChecker {
 
+    private static final int ADMIN = Role.ROLE_ADMIN.bit();
+    private static final int ADMIN_OR_SYSTEM = Role.ROLE_ADMIN.bit() | Role.SYSTEM.bit();
+
     public void checkAdminAccess(Set<String> roles) {
 
-        if (roles.contains("ROLE_ADMIN") || roles.contains("SYSTEM")) {
+        if ((RoleSet.maskOf(roles) & ADMIN_OR_SYSTEM) != 0) {
             return;
         }
         throw new SecurityException("Admin role required");
@@ -24,8 +30,31 @@ public class AccessChecker {
 
     // Проверка доступа для обычного пользователя или админа
     public void checkUserAccess(Long targetUserId, Long requesterId, Set<String> roles) {
-        if (!roles.contains("ROLE_ADMIN") && !targetUserId.equals(requesterId)) {
+        if ((RoleSet.maskOf(roles) & ADMIN) == 0 && !targetUserId.equals(requesterId)) {
+            throw new SecurityException("Access denied");
+        }
+    }
+
+    // Для проверки владельца в самом SQL: админу фильтр не нужен (null), пользователю - только свои строки
+    public Long ownerFilter(Long requesterId, Set<String> roles) {
+        if ((RoleSet.maskOf(roles) & ADMIN) != 0) {
+            return null;
+        }
+        if (requesterId == null) {
             throw new SecurityException("Access denied");
         }
+        return requesterId;
+    }
+
+    // Пакетная проверка: админ видит всех, пользователь - только себя
+    public void checkUsersAccess(Collection<Long> targetUserIds, Long requesterId, Set<String> roles) {
+        if ((RoleSet.maskOf(roles) & ADMIN) != 0) {
+            return;
+        }
+        for (Long targetUserId : targetUserIds) {
+            if (!targetUserId.equals(requesterId)) {
+                throw new SecurityException("Access denied");
+            }
+        }
     }
 }
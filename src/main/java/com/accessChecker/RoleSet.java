@@ -0,0 +1,101 @@
+package com.accessChecker;
+
+import com.enums.Role;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Неизменяемый набор ролей поверх битовой маски. Снаружи это Set<String>, поэтому сигнатуры
+// сервисов не меняются, а AccessChecker проверяет маску без поиска по строкам.
+// Все комбинации ролей создаются заранее - разбор заголовка или токена не аллоцирует набор.
+public final class RoleSet extends AbstractSet<String> {
+
+    private static final Role[] ROLES = Role.values();
+    private static final RoleSet[] ALL = new RoleSet[1 << ROLES.length];
+
+    static {
+        for (int mask = 0; mask < ALL.length; mask++) {
+            ALL[mask] = new RoleSet(mask);
+        }
+    }
+
+    public static final RoleSet EMPTY = ALL[0];
+
+    private final int mask;
+
+    private RoleSet(int mask) {
+        this.mask = mask;
+    }
+
+    public static RoleSet of(int mask) {
+        return ALL[mask & (ALL.length - 1)];
+    }
+
+    public static RoleSet of(Collection<String> names) {
+        if (names instanceof RoleSet roleSet) {
+            return roleSet;
+        }
+        int mask = 0;
+        for (String name : names) {
+            Role role = Role.fromName(name == null ? null : name.trim());
+            if (role != null) {
+                mask |= role.bit();
+            }
+        }
+        return ALL[mask];
+    }
+
+    public static int maskOf(Collection<String> roles) {
+        return of(roles).mask;
+    }
+
+    public int mask() {
+        return mask;
+    }
+
+    public boolean has(Role role) {
+        return (mask & role.bit()) != 0;
+    }
+
+    public boolean hasAny(int bits) {
+        return (mask & bits) != 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String name)) {
+            return false;
+        }
+        Role role = Role.fromName(name);
+        return role != null && has(role);
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int remaining = mask;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public String next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                int ordinal = Integer.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return ROLES[ordinal].name();
+            }
+        };
+    }
+}
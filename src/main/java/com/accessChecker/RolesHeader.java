@@ -0,0 +1,44 @@
+package com.accessChecker;
+
+import com.enums.Role;
+
+// Разбор заголовка X-User-Roles ("ROLE_ADMIN, ROLE_USER") в RoleSet: без split/stream и подстрок
+public final class RolesHeader {
+
+    private static final Role[] ROLES = Role.values();
+
+    private RolesHeader() {
+    }
+
+    public static RoleSet parse(String rolesHeader) {
+        if (rolesHeader == null || rolesHeader.isBlank()) {
+            return RoleSet.EMPTY;
+        }
+        int mask = 0;
+        int length = rolesHeader.length();
+        int start = 0;
+        while (start <= length) {
+            int end = rolesHeader.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            int from = start;
+            int to = end;
+            while (from < to && Character.isWhitespace(rolesHeader.charAt(from))) from++;
+            while (to > from && Character.isWhitespace(rolesHeader.charAt(to - 1))) to--;
+            mask |= bitOf(rolesHeader, from, to - from);
+            start = end + 1;
+        }
+        return RoleSet.of(mask);
+    }
+
+    private static int bitOf(String header, int offset, int length) {
+        for (Role role : ROLES) {
+            String name = role.name();
+            if (name.length() == length && header.regionMatches(offset, name, 0, length)) {
+                return role.bit();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Пакетные операции с кэшем; для не-двухуровневых кэшей (тесты, simple) - поштучно
+public final class CacheBatches {
+
+    private CacheBatches() {
+    }
+
+    public static Map<Object, Object> getAll(Cache cache, Collection<?> keys) {
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            return twoLevelCache.getAll(List.copyOf(keys));
+        }
+        Map<Object, Object> result = new HashMap<>();
+        for (Object key : keys) {
+            Cache.ValueWrapper wrapper = cache.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                result.put(key, wrapper.get());
+            }
+        }
+        return result;
+    }
+
+    // промахи - одним вызовом loader; найденное кладётся в кэш, если ключ не инвалидировали во время загрузки
+    public static <K, V> Map<K, V> loadAll(Cache cache, Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            return twoLevelCache.loadAll(keys, loader);
+        }
+        Map<K, V> values = loader.apply(List.copyOf(keys));
+        values.forEach(cache::put);
+        return values;
+    }
+}
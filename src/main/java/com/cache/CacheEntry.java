@@ -0,0 +1,6 @@
+package com.cache;
+
+// Значение кэша с логическим сроком жизни: после expiresAt оно ещё отдаётся (stale),
+// пока Redis не удалит ключ по жёсткому TTL; loadMillis - сколько заняла загрузка из БД
+public record CacheEntry(Object value, long expiresAt, long loadMillis) {
+}
@@ -0,0 +1,58 @@
+package com.cache;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Поколение кэша в ключе: <prefix>:<cache>:g<N>::<key>. Полная очистка - один INCR счётчика
+// <prefix>:<cache>:gen вместо SCAN/DEL по всем ключам; старые ключи истекают по TTL
+// или удаляются фоновой чисткой (RedisStartupCleaner).
+public class CacheGenerations {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+    private final ConcurrentMap<String, Long> generations = new ConcurrentHashMap<>();
+
+    public CacheGenerations(StringRedisTemplate redisTemplate, String keyPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+    }
+
+    // вызывается RedisCache на каждый ключ - после первого обращения без похода в Redis
+    public String prefixFor(String cacheName) {
+        return cachePrefix(cacheName) + current(cacheName) + "::";
+    }
+
+    // общая часть ключей всех поколений кэша, для SCAN MATCH
+    public String cachePrefix(String cacheName) {
+        return keyPrefix + ":" + cacheName + ":g";
+    }
+
+    public long current(String cacheName) {
+        return generations.computeIfAbsent(cacheName, this::load);
+    }
+
+    public long bump(String cacheName) {
+        Long next = redisTemplate.opsForValue().increment(generationKey(cacheName));
+        long generation = next != null ? next : load(cacheName);
+        generations.put(cacheName, generation);
+        return generation;
+    }
+
+    // другой узел сменил поколение - перечитаем при следующем обращении
+    void forget(String cacheName) {
+        generations.remove(cacheName);
+    }
+
+    private long load(String cacheName) {
+        String key = generationKey(cacheName);
+        redisTemplate.opsForValue().setIfAbsent(key, "1");
+        String value = redisTemplate.opsForValue().get(key);
+        return value != null ? Long.parseLong(value) : 1L;
+    }
+
+    private String generationKey(String cacheName) {
+        return keyPrefix + ":" + cacheName + ":gen";
+    }
+}
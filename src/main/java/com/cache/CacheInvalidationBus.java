@@ -0,0 +1,69 @@
+package com.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+
+@Slf4j
+public class CacheInvalidationBus {
+
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public CacheInvalidationBus(StringRedisTemplate redisTemplate, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+    }
+
+    public void publishEvict(String cacheName, Object key) {
+        publish(EVICT, cacheName, String.valueOf(key));
+    }
+
+    public void publishClear(String cacheName) {
+        publish(CLEAR, cacheName, "");
+    }
+
+    // в конвейер вызывающего, вместе с DEL: ошибки обрабатывает он
+    public void publishEvicts(RedisConnection connection, String cacheName, Collection<?> keys) {
+        byte[] rawChannel = channel.getBytes(StandardCharsets.UTF_8);
+        for (Object key : keys) {
+            String message = message(EVICT, cacheName, String.valueOf(key));
+            connection.publish(rawChannel, message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // формат сообщения: nodeId|op|cacheName|key
+    public void receive(Message message, TwoLevelCacheManager cacheManager) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 4);
+        if (parts.length < 4 || nodeId.equals(parts[0])) {
+            return; // свои сообщения L1 уже обработал
+        }
+        if (CLEAR.equals(parts[1])) {
+            cacheManager.clearLocal(parts[2]);
+        } else {
+            cacheManager.evictLocal(parts[2], parts[3]);
+        }
+    }
+
+    private void publish(String op, String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(channel, message(op, cacheName, key));
+        } catch (RuntimeException ex) {
+            // L1 на других узлах доживёт до local-ttl
+            log.warn("Failed to publish cache invalidation for {}::{}", cacheName, key, ex);
+        }
+    }
+
+    private String message(String op, String cacheName, String key) {
+        return nodeId + "|" + op + "|" + cacheName + "|" + key;
+    }
+}
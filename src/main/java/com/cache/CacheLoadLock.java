@@ -0,0 +1,67 @@
+package com.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+// Короткая блокировка загрузки ключа между узлами: SET NX PX.
+// Недоступный Redis не должен ломать чтение - в этом случае загружаем без блокировки.
+@Slf4j
+public class CacheLoadLock {
+
+    // снимаем только свою блокировку: после истечения TTL её мог взять другой узел
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration ttl;
+    private final Duration wait;
+    private final Duration pollInterval;
+
+    public CacheLoadLock(StringRedisTemplate redisTemplate, Duration ttl, Duration wait, Duration pollInterval) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = ttl;
+        this.wait = wait;
+        this.pollInterval = pollInterval;
+    }
+
+    // сколько ждать значение от узла-владельца, прежде чем грузить самим
+    public Duration waitTime() {
+        return wait;
+    }
+
+    public Duration pollInterval() {
+        return pollInterval;
+    }
+
+    // токен владельца или null, если блокировку держит другой узел
+    public String tryLock(String cacheName, String key) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(lockKey(cacheName, key), token, ttl);
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        } catch (RuntimeException ex) {
+            log.warn("Failed to acquire cache load lock for {}::{}", cacheName, key, ex);
+            return token;
+        }
+    }
+
+    public void unlock(String cacheName, String key, String token) {
+        try {
+            redisTemplate.execute(RELEASE, List.of(lockKey(cacheName, key)), token);
+        } catch (RuntimeException ex) {
+            // блокировка истечёт сама через ttl
+            log.warn("Failed to release cache load lock for {}::{}", cacheName, key, ex);
+        }
+    }
+
+    private static String lockKey(String cacheName, String key) {
+        return "lock:" + cacheName + "::" + key;
+    }
+}
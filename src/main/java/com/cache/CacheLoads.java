@@ -0,0 +1,26 @@
+package com.cache;
+
+import com.datasource.PrimaryReads;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+// Read-through через Cache.get(key, loader): исключение загрузчика пробрасывается как есть,
+// как у @Cacheable(sync = true), чтобы GlobalExceptionHandler видел исходный тип.
+// Загрузчик читает из primary: устаревшая строка с реплики осталась бы в общем кэше.
+public final class CacheLoads {
+
+    private CacheLoads() {
+    }
+
+    public static <T> T get(Cache cache, Object key, Callable<T> loader) {
+        try {
+            return cache.get(key, PrimaryReads.of(loader));
+        } catch (Cache.ValueRetrievalException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Метрики одного кэша, все с тегом cache=<имя>. Размер значений в байтах пишет CacheValueCodec (cache.codec.size).
+//   cache.gets{result=hit,level=local|remote}, cache.gets{result=miss}
+//   cache.puts, cache.evictions, cache.loads (таймер загрузки из БД),
+//   cache.loads.coalesced{scope}, cache.loads.discarded (загрузка пережила инвалидацию),
+//   cache.refreshes{result}, cache.size{level=local}
+class CacheMetrics {
+
+    final Counter localHits;
+    final Counter remoteHits;
+    final Counter misses;
+    final Counter puts;
+    final Counter evictions;
+    final Timer loads;
+    final Counter coalescedLocal;
+    final Counter coalescedRemote;
+    final Counter discardedLoads;
+    final Counter refreshSucceeded;
+    final Counter refreshFailed;
+
+    CacheMetrics(String cacheName, MeterRegistry registry, com.github.benmanes.caffeine.cache.Cache<?, ?> local) {
+        Gauge.builder("cache.size", local, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .tag("cache", cacheName)
+                .tag("level", "local")
+                .register(registry);
+        this.localHits = Counter.builder("cache.gets")
+                .tag("cache", cacheName)
+                .tag("result", "hit")
+                .tag("level", "local")
+                .register(registry);
+        this.remoteHits = Counter.builder("cache.gets")
+                .tag("cache", cacheName)
+                .tag("result", "hit")
+                .tag("level", "remote")
+                .register(registry);
+        // у промаха уровня нет - промахнулись оба
+        this.misses = Counter.builder("cache.gets")
+                .tag("cache", cacheName)
+                .tag("result", "miss")
+                .tag("level", "none")
+                .register(registry);
+        this.puts = Counter.builder("cache.puts")
+                .tag("cache", cacheName)
+                .register(registry);
+        this.evictions = Counter.builder("cache.evictions")
+                .tag("cache", cacheName)
+                .register(registry);
+        this.loads = Timer.builder("cache.loads")
+                .tag("cache", cacheName)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.coalescedLocal = Counter.builder("cache.loads.coalesced")
+                .tag("cache", cacheName)
+                .tag("scope", "local")
+                .register(registry);
+        this.coalescedRemote = Counter.builder("cache.loads.coalesced")
+                .tag("cache", cacheName)
+                .tag("scope", "remote")
+                .register(registry);
+        this.discardedLoads = Counter.builder("cache.loads.discarded")
+                .tag("cache", cacheName)
+                .register(registry);
+        this.refreshSucceeded = Counter.builder("cache.refreshes")
+                .tag("cache", cacheName)
+                .tag("result", "success")
+                .register(registry);
+        this.refreshFailed = Counter.builder("cache.refreshes")
+                .tag("cache", cacheName)
+                .tag("result", "failure")
+                .register(registry);
+    }
+
+    double hits() {
+        return localHits.count() + remoteHits.count();
+    }
+}
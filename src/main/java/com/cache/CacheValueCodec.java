@@ -0,0 +1,365 @@
+package com.cache;
+
+import com.dto.PaymentCardDto;
+import com.dto.UserDto;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Компактный бинарный формат значений кеша вместо JDK-сериализации.
+// [версия формата][тип][поля]: битовая маска null/boolean-полей, varint для чисел,
+// LocalDate как epochDay, строки - длина + UTF-8. Всё, что не DTO, уходит в JDK-сериализацию.
+// v2: версия сущности в USER/CARD. Записи v1 (старые поды при rolling deploy) читаются
+// с version = null, пишется только v2.
+public class CacheValueCodec implements RedisSerializer<Object> {
+
+    static final byte FORMAT_VERSION = 2;
+    private static final byte FORMAT_V1 = 1;
+
+    private static final byte TYPE_JDK = 0;
+    private static final byte TYPE_USER = 1;
+    private static final byte TYPE_CARD = 2;
+    private static final byte TYPE_CARD_LIST = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_ENTRY = 5;
+
+    // начало JDK-потока (0xACED): записи, сохранённые до появления кодека
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final JdkSerializationRedisSerializer fallback;
+    private final DistributionSummary encodedSize;
+    private final Timer encodeTimer;
+    private final Timer decodeTimer;
+
+    public CacheValueCodec(String cacheName, MeterRegistry registry, ClassLoader classLoader) {
+        this.fallback = new JdkSerializationRedisSerializer(classLoader);
+        this.encodedSize = DistributionSummary.builder("cache.codec.size")
+                .baseUnit("bytes")
+                .tag("cache", cacheName)
+                .register(registry);
+        this.encodeTimer = Timer.builder("cache.codec.time")
+                .tag("cache", cacheName)
+                .tag("op", "encode")
+                .register(registry);
+        this.decodeTimer = Timer.builder("cache.codec.time")
+                .tag("cache", cacheName)
+                .tag("op", "decode")
+                .register(registry);
+    }
+
+    @Override
+    public byte[] serialize(Object value) {
+        if (value == null) {
+            return EMPTY;
+        }
+        long start = System.nanoTime();
+        byte[] bytes = encode(value);
+        encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        encodedSize.record(bytes.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Object value = decode(bytes);
+        decodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return value;
+    }
+
+    private byte[] encode(Object value) {
+        Output out = new Output(128);
+        out.writeByte(FORMAT_VERSION);
+        // ENTRY: срок жизни и время загрузки, затем само значение со своим типом
+        if (value instanceof CacheEntry entry && entry.value() != null) {
+            out.writeByte(TYPE_ENTRY);
+            out.writeVarLong(entry.expiresAt());
+            out.writeVarLong(entry.loadMillis());
+            value = entry.value();
+        }
+        writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    private void writeValue(Output out, Object value) {
+        if (value instanceof UserDto user) {
+            out.writeByte(TYPE_USER);
+            writeUser(out, user);
+        } else if (value instanceof PaymentCardDto card) {
+            out.writeByte(TYPE_CARD);
+            writeCard(out, card);
+        } else if (value instanceof List<?> list && containsOnlyCards(list)) {
+            out.writeByte(TYPE_CARD_LIST);
+            writeCards(out, list);
+        } else if (value instanceof Boolean flag) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeByte(flag ? 1 : 0);
+        } else {
+            out.writeByte(TYPE_JDK);
+            out.writeBytes(fallback.serialize(value));
+        }
+    }
+
+    private Object decode(byte[] bytes) {
+        if (bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+            return fallback.deserialize(bytes);
+        }
+        // запись более новой версии (откат деплоя) - считаем промахом, значение перезапишется
+        if (bytes[0] != FORMAT_VERSION && bytes[0] != FORMAT_V1) {
+            return null;
+        }
+        boolean versioned = bytes[0] == FORMAT_VERSION;
+        Input in = new Input(bytes, 1);
+        int type = in.readByte();
+        if (type == TYPE_ENTRY) {
+            long expiresAt = in.readVarLong();
+            long loadMillis = in.readVarLong();
+            Object value = readValue(in, in.readByte(), versioned);
+            return value != null ? new CacheEntry(value, expiresAt, loadMillis) : null;
+        }
+        return readValue(in, type, versioned);
+    }
+
+    private Object readValue(Input in, int type, boolean versioned) {
+        return switch (type) {
+            case TYPE_USER -> readUser(in, versioned);
+            case TYPE_CARD -> readCard(in, versioned);
+            case TYPE_CARD_LIST -> readCards(in, versioned);
+            case TYPE_BOOLEAN -> in.readByte() != 0;
+            case TYPE_JDK -> fallback.deserialize(in.remaining());
+            // тип из более новой версии кода - промах, как и неизвестная версия формата
+            default -> null;
+        };
+    }
+
+    // USER: маска присутствия полей, затем сами поля
+    private static void writeUser(Output out, UserDto user) {
+        int mask = bit(user.getId() != null, 0)
+                | bit(user.getName() != null, 1)
+                | bit(user.getSurname() != null, 2)
+                | bit(user.getBirthDate() != null, 3)
+                | bit(user.getEmail() != null, 4)
+                | bit(user.getActive() != null, 5)
+                | bit(Boolean.TRUE.equals(user.getActive()), 6)
+                | bit(user.getPaymentCards() != null, 7);
+        out.writeByte(mask);
+        writeVersion(out, user.getVersion());
+        if (user.getId() != null) out.writeVarLong(user.getId());
+        if (user.getName() != null) out.writeString(user.getName());
+        if (user.getSurname() != null) out.writeString(user.getSurname());
+        if (user.getBirthDate() != null) out.writeDate(user.getBirthDate());
+        if (user.getEmail() != null) out.writeString(user.getEmail());
+        if (user.getPaymentCards() != null) writeCards(out, user.getPaymentCards());
+    }
+
+    private static UserDto readUser(Input in, boolean versioned) {
+        int mask = in.readByte();
+        UserDto user = new UserDto();
+        user.setVersion(versioned ? readVersion(in) : null);
+        if (has(mask, 0)) user.setId(in.readVarLong());
+        if (has(mask, 1)) user.setName(in.readString());
+        if (has(mask, 2)) user.setSurname(in.readString());
+        if (has(mask, 3)) user.setBirthDate(in.readDate());
+        if (has(mask, 4)) user.setEmail(in.readString());
+        if (has(mask, 5)) user.setActive(has(mask, 6));
+        if (has(mask, 7)) user.setPaymentCards(readCards(in, versioned));
+        return user;
+    }
+
+    // CARD
+    private static void writeCard(Output out, PaymentCardDto card) {
+        int mask = bit(card.getId() != null, 0)
+                | bit(card.getNumber() != null, 1)
+                | bit(card.getHolder() != null, 2)
+                | bit(card.getExpirationDate() != null, 3)
+                | bit(card.getActive() != null, 4)
+                | bit(Boolean.TRUE.equals(card.getActive()), 5)
+                | bit(card.getUserId() != null, 6);
+        out.writeByte(mask);
+        writeVersion(out, card.getVersion());
+        if (card.getId() != null) out.writeVarLong(card.getId());
+        if (card.getNumber() != null) out.writeString(card.getNumber());
+        if (card.getHolder() != null) out.writeString(card.getHolder());
+        if (card.getExpirationDate() != null) out.writeDate(card.getExpirationDate());
+        if (card.getUserId() != null) out.writeVarLong(card.getUserId());
+    }
+
+    private static PaymentCardDto readCard(Input in, boolean versioned) {
+        int mask = in.readByte();
+        PaymentCardDto.PaymentCardDtoBuilder card = PaymentCardDto.builder()
+                .version(versioned ? readVersion(in) : null);
+        if (has(mask, 0)) card.id(in.readVarLong());
+        if (has(mask, 1)) card.number(in.readString());
+        if (has(mask, 2)) card.holder(in.readString());
+        if (has(mask, 3)) card.expirationDate(in.readDate());
+        if (has(mask, 4)) card.active(has(mask, 5));
+        if (has(mask, 6)) card.userId(in.readVarLong());
+        return card.build();
+    }
+
+    private static void writeCards(Output out, List<?> cards) {
+        out.writeVarLong(cards.size());
+        for (Object card : cards) {
+            writeCard(out, (PaymentCardDto) card);
+        }
+    }
+
+    private static List<PaymentCardDto> readCards(Input in, boolean versioned) {
+        int size = (int) in.readVarLong();
+        List<PaymentCardDto> cards = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            cards.add(readCard(in, versioned));
+        }
+        return cards;
+    }
+
+    // в маске USER свободных бит нет: версия + 1, 0 - null
+    private static void writeVersion(Output out, Long version) {
+        out.writeVarLong(version != null ? version + 1 : 0);
+    }
+
+    private static Long readVersion(Input in) {
+        long value = in.readVarLong();
+        return value != 0 ? value - 1 : null;
+    }
+
+    private static boolean containsOnlyCards(List<?> list) {
+        for (Object element : list) {
+            if (!(element instanceof PaymentCardDto)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int bit(boolean set, int position) {
+        return set ? 1 << position : 0;
+    }
+
+    private static boolean has(int mask, int position) {
+        return (mask & (1 << position)) != 0;
+    }
+
+    private static final class Output {
+
+        private byte[] buffer;
+        private int position;
+
+        Output(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        // zigzag + varint: маленькие и отрицательные значения занимают 1-2 байта
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[position++] = (byte) zigzag;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeDate(LocalDate date) {
+            writeVarLong(date.toEpochDay());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readByte() {
+            check(1);
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 63) {
+                    throw new SerializationException("Malformed varint in cache value");
+                }
+                b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            check(length);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        LocalDate readDate() {
+            return LocalDate.ofEpochDay(readVarLong());
+        }
+
+        byte[] remaining() {
+            byte[] rest = Arrays.copyOfRange(buffer, position, buffer.length);
+            position = buffer.length;
+            return rest;
+        }
+
+        private void check(int length) {
+            if (length < 0 || position + length > buffer.length) {
+                throw new SerializationException("Truncated cache value");
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.cache;
+
+import org.springframework.cache.Cache;
+
+// Чтение значения, из которого транзакция соберёт put после коммита. Если ключ инвалидируют
+// между чтением и коммитом, put превратится в evict; для не-двухуровневых кэшей - обычный get
+public final class CacheWatches {
+
+    private CacheWatches() {
+    }
+
+    public static <T> T getForUpdate(Cache cache, Object key, Class<T> type) {
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            return twoLevelCache.getForUpdate(key, type);
+        }
+        return cache.get(key, type);
+    }
+}
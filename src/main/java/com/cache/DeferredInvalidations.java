@@ -0,0 +1,234 @@
+package com.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+// Изменения кэша внутри транзакции копятся и уходят после коммита: до коммита параллельный читатель
+// иначе успевал закэшировать старую строку обратно. Все DEL/SET и рассылка инвалидаций транзакции -
+// один конвейер Redis. При откате не применяется ничего.
+// Если Redis недоступен, пачка ждёт в небольшом outbox (в памяти узла) и повторяется по расписанию;
+// при переполнении кэш целиком переводится на новое поколение, когда Redis вернётся.
+@Slf4j
+public class DeferredInvalidations {
+
+    static final Object EVICT = new Object();
+
+    // null - remote не Redis (тесты), операции применяются поштучно
+    private final RedisConnectionFactory connectionFactory;
+    private final int outboxCapacity;
+    private final Queue<Map<TwoLevelCache, Map<Object, Object>>> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outboxSize = new AtomicInteger();
+    private final Set<TwoLevelCache> pendingClears = ConcurrentHashMap.newKeySet();
+    private final Counter flushFailures;
+
+    public DeferredInvalidations(RedisConnectionFactory connectionFactory, int outboxCapacity,
+                                 MeterRegistry meterRegistry) {
+        this.connectionFactory = connectionFactory;
+        this.outboxCapacity = outboxCapacity;
+        Gauge.builder("cache.invalidation.outbox.size", outboxSize, AtomicInteger::get)
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("cache.invalidation.flush.failures")
+                .register(meterRegistry);
+    }
+
+    // true - операция отложена до коммита, false - транзакции нет, выполнять сразу
+    boolean deferEvict(TwoLevelCache cache, Object key) {
+        return defer(cache, key, EVICT);
+    }
+
+    boolean deferPut(TwoLevelCache cache, Object key, Object value) {
+        return defer(cache, key, value);
+    }
+
+    // значение ключа читается для put после коммита: отметка живёт до конца транзакции
+    void deferWatch(TwoLevelCache cache, Object key) {
+        Batch batch = currentBatch();
+        if (batch != null) {
+            batch.watches.computeIfAbsent(cache, c -> new LinkedHashMap<>()).computeIfAbsent(key, cache::watch);
+        }
+    }
+
+    // операции до clear теряют смысл, после - применяются поверх нового поколения
+    boolean deferClear(TwoLevelCache cache) {
+        Batch batch = currentBatch();
+        if (batch == null) {
+            return false;
+        }
+        batch.ops.remove(cache);
+        batch.clears.add(cache);
+        return true;
+    }
+
+    private boolean defer(TwoLevelCache cache, Object key, Object op) {
+        Batch batch = currentBatch();
+        if (batch == null) {
+            return false;
+        }
+        // на ключ - последняя операция транзакции
+        Map<Object, Object> ops = batch.ops.computeIfAbsent(cache, c -> new LinkedHashMap<>());
+        ops.remove(key);
+        ops.put(key, op);
+        return true;
+    }
+
+    private Batch currentBatch() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        Batch batch = (Batch) TransactionSynchronizationManager.getResource(this);
+        if (batch == null) {
+            Batch created = new Batch();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                // раньше синхронизаций по умолчанию (события изменений): их читатель увидит уже свежий кэш
+                @Override
+                public int getOrder() {
+                    return 0;
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DeferredInvalidations.this);
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            flush(created);
+                        }
+                    } finally {
+                        created.watches.forEach((cache, keyWatches) -> keyWatches.forEach(cache::unwatch));
+                    }
+                }
+            });
+            batch = created;
+        }
+        return batch;
+    }
+
+    // afterCompletion: синхронизация ещё активна, поэтому только *Now-методы кэша
+    private void flush(Batch batch) {
+        for (TwoLevelCache cache : batch.clears) {
+            try {
+                cache.clearNow();
+            } catch (RuntimeException ex) {
+                log.warn("Deferred clear of cache {} failed, will retry", cache.getName(), ex);
+                pendingClears.add(cache);
+            }
+        }
+        if (batch.ops.isEmpty()) {
+            return;
+        }
+        // put по значению, прочитанному в транзакции, после инвалидации ключа вернул бы старые данные
+        forEachWatchedPut(batch, (cache, key) -> batch.ops.get(cache).put(key, EVICT));
+        // L1 этого узла не зависит от Redis
+        batch.ops.forEach((cache, ops) -> cache.applyLocal(ops, batch.watchesOf(cache)));
+        try {
+            writeRemote(batch.ops);
+            forEachWatchedPut(batch, TwoLevelCache::discard);
+        } catch (RuntimeException ex) {
+            flushFailures.increment();
+            log.warn("Deferred cache invalidation failed, queued for retry", ex);
+            enqueue(batch.ops);
+        }
+    }
+
+    // put транзакции по ключу, который после чтения через getForUpdate успели инвалидировать
+    private static void forEachWatchedPut(Batch batch, BiConsumer<TwoLevelCache, Object> action) {
+        batch.watches.forEach((cache, keyWatches) -> {
+            Map<Object, Object> ops = batch.ops.get(cache);
+            if (ops == null) {
+                return;
+            }
+            keyWatches.forEach((key, watch) -> {
+                Object op = ops.get(key);
+                if (watch.invalidated && op != null && op != EVICT) {
+                    action.accept(cache, key);
+                }
+            });
+        });
+    }
+
+    private void writeRemote(Map<TwoLevelCache, Map<Object, Object>> ops) {
+        if (connectionFactory == null) {
+            ops.forEach((cache, keyOps) -> cache.writeRemote(null, keyOps));
+            return;
+        }
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.openPipeline();
+            ops.forEach((cache, keyOps) -> cache.writeRemote(connection, keyOps));
+            connection.closePipeline();
+        }
+    }
+
+    // повтор SET мог бы перезаписать более новое значение - в outbox всё превращается в DEL
+    private void enqueue(Map<TwoLevelCache, Map<Object, Object>> ops) {
+        if (outboxSize.get() >= outboxCapacity) {
+            pendingClears.addAll(ops.keySet());
+            return;
+        }
+        Map<TwoLevelCache, Map<Object, Object>> evicts = new LinkedHashMap<>();
+        ops.forEach((cache, keyOps) -> {
+            Map<Object, Object> cacheEvicts = new LinkedHashMap<>();
+            keyOps.keySet().forEach(key -> cacheEvicts.put(key, EVICT));
+            evicts.put(cache, cacheEvicts);
+        });
+        outbox.add(evicts);
+        outboxSize.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.outbox-retry-interval:5s}")
+    public void retryOutbox() {
+        for (TwoLevelCache cache : pendingClears) {
+            try {
+                cache.clearNow();
+                pendingClears.remove(cache);
+            } catch (RuntimeException ex) {
+                return; // Redis всё ещё недоступен
+            }
+        }
+        Map<TwoLevelCache, Map<Object, Object>> ops;
+        while ((ops = outbox.peek()) != null) {
+            // пока Redis был недоступен, L1 мог снова заполниться из него старыми значениями
+            ops.forEach((cache, keyOps) -> cache.applyLocal(keyOps, Map.of()));
+            try {
+                writeRemote(ops);
+            } catch (RuntimeException ex) {
+                log.debug("Cache invalidation outbox retry failed: {}", ex.getMessage());
+                return;
+            }
+            outbox.poll();
+            outboxSize.decrementAndGet();
+        }
+    }
+
+    int outboxSize() {
+        return outboxSize.get();
+    }
+
+    private static final class Batch {
+
+        private final Set<TwoLevelCache> clears = new LinkedHashSet<>();
+        private final Map<TwoLevelCache, Map<Object, Object>> ops = new LinkedHashMap<>();
+        private final Map<TwoLevelCache, Map<Object, TwoLevelCache.Watch>> watches = new LinkedHashMap<>();
+
+        private Map<Object, TwoLevelCache.Watch> watchesOf(TwoLevelCache cache) {
+            return watches.getOrDefault(cache, Map.of());
+        }
+    }
+}
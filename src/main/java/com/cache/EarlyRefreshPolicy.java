@@ -0,0 +1,32 @@
+package com.cache;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// XFetch: запись обновляется заранее с вероятностью, которая растёт к концу TTL
+// и пропорциональна времени загрузки. Горячий ключ почти наверняка обновится до истечения,
+// редкий - доживёт до stale-окна и обновится в фоне при первом чтении.
+public class EarlyRefreshPolicy {
+
+    private final Duration ttl;
+    private final double beta;
+
+    public EarlyRefreshPolicy(Duration ttl, double beta) {
+        this.ttl = ttl;
+        this.beta = beta;
+    }
+
+    public Duration ttl() {
+        return ttl;
+    }
+
+    public CacheEntry wrap(Object value, long loadMillis) {
+        return new CacheEntry(value, System.currentTimeMillis() + ttl.toMillis(), loadMillis);
+    }
+
+    public boolean shouldRefresh(CacheEntry entry) {
+        // 1 - nextDouble() в (0, 1], логарифм не уходит в -бесконечность
+        double head = entry.loadMillis() * beta * -Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + head >= entry.expiresAt();
+    }
+}
@@ -0,0 +1,149 @@
+package com.cache;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// MGET и конвейерные SET/DEL поверх RedisCache: тот же формат ключей и значений, что у RedisCache
+public class RedisCacheBatchSupport {
+
+    private static final int SCAN_BATCH = 500;
+    private static final byte[] MEMORY_USAGE = "USAGE".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisConnectionFactory connectionFactory;
+
+    public RedisCacheBatchSupport(RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public Map<Object, Object> multiGet(RedisCache cache, List<?> keys) {
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            rawKeys[i] = rawKey(cache, keys.get(i));
+        }
+
+        List<byte[]> rawValues;
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            rawValues = connection.stringCommands().mGet(rawKeys);
+        }
+
+        Map<Object, Object> result = new HashMap<>();
+        if (rawValues == null) {
+            return result;
+        }
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] rawValue = rawValues.get(i);
+            if (rawValue == null) {
+                continue;
+            }
+            Object value = configuration.getValueSerializationPair().read(ByteBuffer.wrap(rawValue));
+            if (value != null && !(value instanceof NullValue)) {
+                result.put(keys.get(i), value);
+            }
+        }
+        return result;
+    }
+
+    public void multiPut(RedisCache cache, Map<?, ?> values) {
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.openPipeline();
+            values.forEach((key, value) -> connection.stringCommands().set(
+                    rawKey(cache, key),
+                    toBytes(configuration.getValueSerializationPair().write(value)),
+                    expiration(configuration.getTtlFunction().getTimeToLive(key, value)),
+                    RedisStringCommands.SetOption.upsert()));
+            connection.closePipeline();
+        }
+    }
+
+    // DEL и SET одного кэша в уже открытый конвейер (DeferredInvalidations): все кэши транзакции - один round trip
+    public void writeInPipeline(RedisConnection connection, RedisCache cache, List<?> evictKeys, Map<?, ?> values) {
+        if (!evictKeys.isEmpty()) {
+            byte[][] rawKeys = new byte[evictKeys.size()][];
+            for (int i = 0; i < evictKeys.size(); i++) {
+                rawKeys[i] = rawKey(cache, evictKeys.get(i));
+            }
+            connection.keyCommands().del(rawKeys);
+        }
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        values.forEach((key, value) -> connection.stringCommands().set(
+                rawKey(cache, key),
+                toBytes(configuration.getValueSerializationPair().write(value)),
+                expiration(configuration.getTtlFunction().getTimeToLive(key, value)),
+                RedisStringCommands.SetOption.upsert()));
+    }
+
+    // SCAN по префиксу текущего поколения (не KEYS); MEMORY USAGE только для первых memorySamples ключей,
+    // объём экстраполируется на все найденные
+    public KeyStats inspect(RedisCache cache, int maxKeys, int memorySamples) {
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(configuration.getKeyPrefixFor(cache.getName()) + "*")
+                .count(SCAN_BATCH)
+                .build();
+        long keys = 0;
+        long sampledBytes = 0;
+        int sampled = 0;
+        boolean truncated;
+        try (RedisConnection connection = connectionFactory.getConnection();
+             Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            while (keys < maxKeys && cursor.hasNext()) {
+                byte[] key = cursor.next();
+                keys++;
+                if (sampled < memorySamples && memoryUsage(connection, key) instanceof Number bytes) {
+                    sampledBytes += bytes.longValue();
+                    sampled++;
+                }
+            }
+            truncated = cursor.hasNext();
+        }
+        Long memoryBytes = sampled > 0 ? sampledBytes * keys / sampled : (keys == 0 ? 0L : null);
+        return new KeyStats(keys, truncated, memoryBytes);
+    }
+
+    // MEMORY USAGE бывает запрещена (managed Redis) - тогда объём неизвестен
+    private static Object memoryUsage(RedisConnection connection, byte[] key) {
+        try {
+            return connection.execute("MEMORY", MEMORY_USAGE, key);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    public record KeyStats(long keys, boolean truncated, Long memoryBytes) {
+    }
+
+    private static byte[] rawKey(RedisCache cache, Object key) {
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        String cacheKey = configuration.getKeyPrefixFor(cache.getName())
+                + configuration.getConversionService().convert(key, String.class);
+        return toBytes(configuration.getKeySerializationPair().write(cacheKey));
+    }
+
+    private static Expiration expiration(Duration ttl) {
+        return ttl == null || ttl.isZero() || ttl.isNegative()
+                ? Expiration.persistent()
+                : Expiration.from(ttl);
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,641 @@
+package com.cache;
+
+import com.dto.CacheStatsDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// L1 (Caffeine, в памяти процесса) перед L2 (Redis).
+// Ключи L1 приводятся к строке, чтобы совпадать с ключами из pub/sub сообщений.
+// Промахи get(key, loader) схлопываются: на ключ работает один загрузчик, остальные ждут его результат.
+// С TTL значения хранятся в конверте CacheEntry: близкие к истечению обновляются в фоне,
+// а до обновления читатели получают текущее (возможно, уже stale) значение.
+// put/evict/clear внутри транзакции откладываются до коммита (DeferredInvalidations).
+// Инвалидация во время загрузки помечает её: прочитанное до коммита значение отдаётся вызывающему,
+// но не кэшируется и не перетирает инвалидацию до конца TTL. Так же помечается значение, прочитанное
+// транзакцией через getForUpdate: её put после коммита превращается в evict.
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> local;
+    private final CacheInvalidationBus invalidationBus;
+    private final RedisCacheBatchSupport batchSupport;
+    // null - схлопывание только внутри узла
+    private final CacheLoadLock loadLock;
+    private final ConcurrentMap<String, Load> loads = new ConcurrentHashMap<>();
+    // ключи, прочитанные транзакциями для put после коммита; набор меняется только внутри compute
+    private final ConcurrentMap<String, Set<Watch>> watches = new ConcurrentHashMap<>();
+    private final CacheMetrics metrics;
+    // null - кэш без TTL, значения хранятся как есть
+    private final EarlyRefreshPolicy refreshPolicy;
+    private final Executor refreshExecutor;
+    // null - очистка через remote.clear()
+    private final CacheGenerations generations;
+    // null - изменения применяются сразу, даже внутри транзакции
+    private final DeferredInvalidations deferred;
+
+    public TwoLevelCache(String name, Cache remote,
+                         com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> local,
+                         CacheInvalidationBus invalidationBus,
+                         RedisCacheBatchSupport batchSupport,
+                         CacheLoadLock loadLock,
+                         MeterRegistry meterRegistry,
+                         EarlyRefreshPolicy refreshPolicy,
+                         Executor refreshExecutor,
+                         CacheGenerations generations,
+                         DeferredInvalidations deferred) {
+        this.name = name;
+        this.remote = remote;
+        this.local = local;
+        this.invalidationBus = invalidationBus;
+        this.batchSupport = batchSupport;
+        this.loadLock = loadLock;
+        this.refreshPolicy = refreshPolicy;
+        this.refreshExecutor = refreshExecutor;
+        this.generations = generations;
+        this.deferred = deferred;
+        this.metrics = new CacheMetrics(name, meterRegistry, local);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return unwrap(lookup(key));
+    }
+
+    // значение как оно лежит в L1/L2 - возможно, в конверте CacheEntry
+    private ValueWrapper lookup(Object key) {
+        String localKey = localKey(key);
+        ValueWrapper wrapper = local.getIfPresent(localKey);
+        if (wrapper != null) {
+            metrics.localHits.increment();
+            return wrapper;
+        }
+        wrapper = remote.get(key);
+        if (wrapper != null) {
+            metrics.remoteHits.increment();
+            local.put(localKey, wrapper);
+        } else {
+            metrics.misses.increment();
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    // чтение для put после коммита (patch): отметка ставится до чтения, и инвалидация ключа
+    // до коммита транзакции превратит этот put в evict
+    public <T> T getForUpdate(Object key, Class<T> type) {
+        if (deferred != null) {
+            deferred.deferWatch(this, key);
+        }
+        return get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = lookup(key);
+        if (wrapper != null) {
+            if (refreshPolicy != null && wrapper.get() instanceof CacheEntry entry
+                    && refreshPolicy.shouldRefresh(entry)) {
+                refreshAsync(key, valueLoader);
+            }
+            return (T) valueOf(wrapper);
+        }
+
+        String localKey = localKey(key);
+        Load load = new Load(false);
+        Load inFlight = loads.putIfAbsent(localKey, load);
+        if (inFlight != null) {
+            metrics.coalescedLocal.increment();
+            Object value = await(inFlight);
+            // пакетная загрузка не знает, как загрузчик сообщает об отсутствии ключа - спрашиваем его сами
+            return value != null || !inFlight.batch ? (T) value : (T) callLoader(key, valueLoader);
+        }
+        try {
+            // предыдущий загрузчик мог закончить между get() и putIfAbsent()
+            wrapper = local.getIfPresent(localKey);
+            Object value = wrapper != null ? valueOf(wrapper) : loadShared(key, localKey, valueLoader, load);
+            load.complete(value);
+            return (T) value;
+        } catch (RuntimeException | Error ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loads.remove(localKey, load);
+        }
+    }
+
+    // между узлами: грузит владелец блокировки, остальные ждут его запись в Redis
+    private Object loadShared(Object key, String localKey, Callable<?> valueLoader, Load load) {
+        if (loadLock == null) {
+            return loadAndStore(key, localKey, valueLoader, load);
+        }
+        String token = loadLock.tryLock(name, localKey);
+        if (token == null) {
+            ValueWrapper loaded = awaitRemote(key);
+            if (loaded != null) {
+                metrics.coalescedRemote.increment();
+                local.put(localKey, loaded);
+                return valueOf(loaded);
+            }
+            // владелец не успел - грузим сами, чтобы не зависеть от чужого узла
+            return loadAndStore(key, localKey, valueLoader, load);
+        }
+        try {
+            ValueWrapper loaded = remote.get(key);
+            if (loaded != null) {
+                local.put(localKey, loaded);
+                return valueOf(loaded);
+            }
+            return loadAndStore(key, localKey, valueLoader, load);
+        } finally {
+            loadLock.unlock(name, localKey, token);
+        }
+    }
+
+    // свежие данные из БД: без рассылки инвалидаций, как и loadAll
+    private Object loadAndStore(Object key, String localKey, Callable<?> valueLoader, Load load) {
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = callLoader(key, valueLoader);
+        } finally {
+            metrics.loads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (load.invalidated) {
+            metrics.discardedLoads.increment();
+            return value;
+        }
+        Object stored = wrap(value, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        remote.put(key, stored);
+        metrics.puts.increment();
+        local.put(localKey, new SimpleValueWrapper(stored));
+        // инвалидация между проверкой и записью: её DEL мог пройти раньше нашего SET - убираем запись сами
+        if (load.invalidated) {
+            metrics.discardedLoads.increment();
+            remote.evict(key);
+            local.invalidate(localKey);
+        }
+        return value;
+    }
+
+    private static Object callLoader(Object key, Callable<?> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+    }
+
+    // фоновое обновление занимает тот же слот в loads, что и загрузка: второй раз ключ не обновляется,
+    // а промах во время обновления дождётся его результата
+    private void refreshAsync(Object key, Callable<?> valueLoader) {
+        String localKey = localKey(key);
+        Load load = new Load(false);
+        if (loads.putIfAbsent(localKey, load) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(key, localKey, valueLoader, load));
+        } catch (RejectedExecutionException ex) {
+            loads.remove(localKey, load);
+            load.completeExceptionally(ex);
+        }
+    }
+
+    private void refresh(Object key, String localKey, Callable<?> valueLoader, Load load) {
+        String token = null;
+        try {
+            if (loadLock != null) {
+                token = loadLock.tryLock(name, localKey);
+                ValueWrapper current = token == null ? remote.get(key) : null;
+                if (current != null) {
+                    // обновляет другой узел, его результат придёт через Redis
+                    load.complete(valueOf(current));
+                    return;
+                }
+            }
+            load.complete(loadAndStore(key, localKey, valueLoader, load));
+            metrics.refreshSucceeded.increment();
+        } catch (RuntimeException | Error ex) {
+            // текущее значение доживёт до жёсткого TTL, следующее чтение попробует снова
+            metrics.refreshFailed.increment();
+            load.completeExceptionally(ex);
+            log.warn("Background refresh of {}::{} failed", name, localKey, ex);
+        } finally {
+            if (token != null) {
+                loadLock.unlock(name, localKey, token);
+            }
+            loads.remove(localKey, load);
+        }
+    }
+
+    private ValueWrapper awaitRemote(Object key) {
+        long deadline = System.nanoTime() + loadLock.waitTime().toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(loadLock.pollInterval());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper != null) {
+                return wrapper;
+            }
+        }
+        return null;
+    }
+
+    // ожидающие получают то же исключение, что и загрузчик
+    private static Object await(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw ex;
+        }
+    }
+
+    // L1, затем один MGET в Redis по всем промахам
+    public Map<Object, Object> getAll(List<?> keys) {
+        Map<Object, Object> found = new HashMap<>();
+        List<Object> misses = new ArrayList<>();
+        for (Object key : keys) {
+            ValueWrapper wrapper = local.getIfPresent(localKey(key));
+            Object value = wrapper != null ? valueOf(wrapper) : null;
+            if (value != null) {
+                found.put(key, value);
+            } else {
+                misses.add(key);
+            }
+        }
+        metrics.localHits.increment(found.size());
+        if (misses.isEmpty()) {
+            return found;
+        }
+
+        Map<Object, Object> remoteValues;
+        if (remote instanceof RedisCache redisCache) {
+            remoteValues = batchSupport.multiGet(redisCache, misses);
+        } else {
+            remoteValues = new HashMap<>();
+            for (Object key : misses) {
+                ValueWrapper wrapper = remote.get(key);
+                if (wrapper != null && wrapper.get() != null) {
+                    remoteValues.put(key, wrapper.get());
+                }
+            }
+        }
+        remoteValues.forEach((key, value) -> {
+            local.put(localKey(key), new SimpleValueWrapper(value));
+            found.put(key, value instanceof CacheEntry entry ? entry.value() : value);
+        });
+        metrics.remoteHits.increment(remoteValues.size());
+        metrics.misses.increment(misses.size() - remoteValues.size());
+        return found;
+    }
+
+    // дозаполнение промахов одним запросом к БД. Загрузки регистрируются до запроса, как в get(key, loader):
+    // ключ, инвалидированный во время запроса, в кэш не пишется. Ключ, который уже грузит другой поток,
+    // читается, но не пишется - запишет его загрузчик
+    public <K, V> Map<K, V> loadAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        Map<K, Load> registered = new HashMap<>();
+        for (K key : keys) {
+            Load load = new Load(true);
+            if (loads.putIfAbsent(localKey(key), load) == null) {
+                registered.put(key, load);
+            }
+        }
+        try {
+            Map<K, V> values = loader.apply(List.copyOf(keys));
+            putAll(values, registered);
+            registered.forEach((key, load) -> load.complete(values.get(key)));
+            return values;
+        } catch (RuntimeException | Error ex) {
+            registered.values().forEach(load -> load.completeExceptionally(ex));
+            throw ex;
+        } finally {
+            registered.forEach((key, load) -> loads.remove(localKey(key), load));
+        }
+    }
+
+    // свежие данные из БД: без рассылки инвалидаций
+    private void putAll(Map<?, ?> values, Map<?, Load> registered) {
+        Map<Object, Object> stored = new HashMap<>();
+        values.forEach((key, value) -> {
+            Load load = registered.get(key);
+            if (load == null) {
+                return;
+            }
+            if (load.invalidated) {
+                metrics.discardedLoads.increment();
+            } else {
+                stored.put(key, wrap(value, 0));
+            }
+        });
+        if (stored.isEmpty()) {
+            return;
+        }
+        if (remote instanceof RedisCache redisCache) {
+            batchSupport.multiPut(redisCache, stored);
+        } else {
+            stored.forEach(remote::put);
+        }
+        stored.forEach((key, value) -> local.put(localKey(key), new SimpleValueWrapper(value)));
+        metrics.puts.increment(stored.size());
+        // инвалидация между проверкой и записью: её DEL мог пройти раньше нашего SET - убираем запись сами
+        stored.keySet().forEach(key -> {
+            if (registered.get(key).invalidated) {
+                metrics.discardedLoads.increment();
+                remote.evict(key);
+                local.invalidate(localKey(key));
+            }
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object stored = wrap(value, 0);
+        if (deferred != null && deferred.deferPut(this, key, stored)) {
+            return;
+        }
+        invalidateLoad(localKey(key));
+        remote.put(key, stored);
+        local.put(localKey(key), new SimpleValueWrapper(stored));
+        metrics.puts.increment();
+        invalidationBus.publishEvict(name, key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        invalidateLoad(localKey(key));
+        ValueWrapper existing = remote.putIfAbsent(key, wrap(value, 0));
+        local.invalidate(localKey(key));
+        if (existing == null) {
+            metrics.puts.increment();
+            invalidationBus.publishEvict(name, key);
+        }
+        return unwrap(existing);
+    }
+
+    @Override
+    public void evict(Object key) {
+        if (deferred != null && deferred.deferEvict(this, key)) {
+            return;
+        }
+        // до DEL: загрузка, начатая раньше, не должна записать старое значение после него
+        invalidateLoad(localKey(key));
+        remote.evict(key);
+        local.invalidate(localKey(key));
+        metrics.evictions.increment();
+        invalidationBus.publishEvict(name, key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        invalidateLoad(localKey(key));
+        boolean evicted = remote.evictIfPresent(key);
+        local.invalidate(localKey(key));
+        if (evicted) {
+            metrics.evictions.increment();
+        }
+        invalidationBus.publishEvict(name, key);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        if (deferred != null && deferred.deferClear(this)) {
+            return;
+        }
+        clearNow();
+    }
+
+    // новое поколение: старые ключи недостижимы сразу, из Redis уходят по TTL или фоновой чисткой.
+    // L1 этого узла чистится до Redis: если Redis недоступен, узел не отдаёт старые значения до повтора;
+    // и после - чтение между очистками могло вернуть в L1 значение старого поколения
+    void clearNow() {
+        clearLocal();
+        if (generations != null) {
+            generations.bump(name);
+        } else {
+            remote.clear();
+        }
+        clearLocal();
+        invalidationBus.publishClear(name);
+    }
+
+    // контракт invalidate - немедленная очистка, в том числе внутри транзакции
+    @Override
+    public boolean invalidate() {
+        clearNow();
+        return true;
+    }
+
+    // для /admin/caches: счётчики и L1 этого узла, Redis - SCAN по текущему поколению
+    public CacheStatsDto stats(int hotKeys, int maxScannedKeys, int memorySamples) {
+        double hits = metrics.hits();
+        double misses = metrics.misses.count();
+        CacheStatsDto.CacheStatsDtoBuilder stats = CacheStatsDto.builder()
+                .name(name)
+                .generation(generations != null ? generations.current(name) : null)
+                .ttl(refreshPolicy != null ? refreshPolicy.ttl().toString() : null)
+                .hits(hits)
+                .misses(misses)
+                .hitRatio(hits + misses > 0 ? hits / (hits + misses) : 0)
+                .loads(metrics.loads.count())
+                .meanLoadMillis(metrics.loads.mean(TimeUnit.MILLISECONDS))
+                .localSize(local.estimatedSize())
+                .localHotKeys(local.policy().eviction()
+                        .map(eviction -> List.copyOf(eviction.hottest(hotKeys).keySet()))
+                        .orElse(List.of()));
+        if (remote instanceof RedisCache redisCache && batchSupport != null) {
+            RedisCacheBatchSupport.KeyStats keyStats = batchSupport.inspect(redisCache, maxScannedKeys, memorySamples);
+            stats.remoteKeys(keyStats.keys())
+                    .remoteKeysTruncated(keyStats.truncated())
+                    .remoteMemoryBytes(keyStats.memoryBytes());
+        }
+        return stats.build();
+    }
+
+    // отложенные операции после коммита (ops: ключ -> значение или DeferredInvalidations.EVICT);
+    // L1 отдельно от Redis, чтобы недоступный Redis не оставил на узле старое значение.
+    // Отметки самой транзакции (own) остаются: по ним после записи в Redis проверяется гонка
+    void applyLocal(Map<Object, Object> ops, Map<Object, Watch> own) {
+        ops.forEach((key, op) -> {
+            String localKey = localKey(key);
+            invalidateLoad(localKey, own.get(key));
+            if (op == DeferredInvalidations.EVICT) {
+                local.invalidate(localKey);
+            } else {
+                local.put(localKey, new SimpleValueWrapper(op));
+            }
+        });
+    }
+
+    // connection - открытый конвейер или null, если remote не Redis
+    void writeRemote(RedisConnection connection, Map<Object, Object> ops) {
+        List<Object> evictKeys = new ArrayList<>();
+        Map<Object, Object> values = new HashMap<>();
+        ops.forEach((key, op) -> {
+            if (op == DeferredInvalidations.EVICT) {
+                evictKeys.add(key);
+            } else {
+                values.put(key, op);
+            }
+        });
+        if (connection != null && remote instanceof RedisCache redisCache && batchSupport != null) {
+            batchSupport.writeInPipeline(connection, redisCache, evictKeys, values);
+            invalidationBus.publishEvicts(connection, name, ops.keySet());
+        } else {
+            evictKeys.forEach(remote::evict);
+            values.forEach(remote::put);
+            ops.keySet().forEach(key -> invalidationBus.publishEvict(name, key));
+        }
+        metrics.evictions.increment(evictKeys.size());
+        metrics.puts.increment(values.size());
+    }
+
+    Watch watch(Object key) {
+        Watch watch = new Watch();
+        watches.compute(localKey(key), (k, watching) -> {
+            Set<Watch> updated = watching != null ? watching : new HashSet<>();
+            updated.add(watch);
+            return updated;
+        });
+        return watch;
+    }
+
+    void unwatch(Object key, Watch watch) {
+        watches.computeIfPresent(localKey(key), (k, watching) -> {
+            watching.remove(watch);
+            return watching.isEmpty() ? null : watching;
+        });
+    }
+
+    // put транзакции записан, но ключ инвалидировали между проверкой и SET - убираем запись сами
+    void discard(Object key) {
+        remote.evict(key);
+        local.invalidate(localKey(key));
+    }
+
+    // инвалидация с другого узла: его DEL в Redis мог опередить запись нашей загрузки
+    void evictLocal(String key) {
+        invalidateLoad(key);
+        local.invalidate(key);
+    }
+
+    void clearLocal() {
+        invalidateLoads();
+        local.invalidateAll();
+    }
+
+    // новые читатели не ждут загрузку, начатую до инвалидации, а её результат не попадёт в кэш
+    private void invalidateLoad(String localKey) {
+        invalidateLoad(localKey, null);
+    }
+
+    private void invalidateLoad(String localKey, Watch own) {
+        Load load = loads.remove(localKey);
+        if (load != null) {
+            load.invalidated = true;
+        }
+        watches.computeIfPresent(localKey, (k, watching) -> {
+            for (Watch watch : watching) {
+                if (watch != own) {
+                    watch.invalidated = true;
+                }
+            }
+            return own != null && watching.contains(own) ? new HashSet<>(Set.of(own)) : null;
+        });
+    }
+
+    private void invalidateLoads() {
+        loads.values().forEach(load -> load.invalidated = true);
+        loads.clear();
+        watches.keySet().forEach(localKey -> invalidateLoad(localKey, null));
+    }
+
+    // время загрузки неизвестно (put) - 0: такое значение обновится не раньше истечения TTL
+    private Object wrap(Object value, long loadMillis) {
+        return refreshPolicy != null && value != null ? refreshPolicy.wrap(value, loadMillis) : value;
+    }
+
+    private static Object valueOf(ValueWrapper wrapper) {
+        Object value = wrapper.get();
+        return value instanceof CacheEntry entry ? entry.value() : value;
+    }
+
+    private static ValueWrapper unwrap(ValueWrapper wrapper) {
+        return wrapper != null && wrapper.get() instanceof CacheEntry entry
+                ? new SimpleValueWrapper(entry.value())
+                : wrapper;
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    static final class Watch {
+        volatile boolean invalidated;
+    }
+
+    private static final class Load extends CompletableFuture<Object> {
+        // загрузка из loadAll: отсутствующий в БД ключ завершает её null
+        final boolean batch;
+        volatile boolean invalidated;
+
+        Load(boolean batch) {
+            this.batch = batch;
+        }
+    }
+}
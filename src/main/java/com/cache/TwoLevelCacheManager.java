@@ -0,0 +1,90 @@
+package com.cache;
+
+import com.config.AppCacheProperties;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager remoteCacheManager;
+    private final AppCacheProperties properties;
+    private final CacheInvalidationBus invalidationBus;
+    private final RedisCacheBatchSupport batchSupport;
+    private final CacheLoadLock loadLock;
+    private final MeterRegistry meterRegistry;
+    private final CacheGenerations generations;
+    private final DeferredInvalidations deferred;
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    // фоновые обновления близких к истечению записей: загрузка - это ожидание БД, виртуальных потоков достаточно
+    private final ExecutorService refreshExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cache-refresh-", 0).factory());
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                AppCacheProperties properties,
+                                CacheInvalidationBus invalidationBus,
+                                RedisCacheBatchSupport batchSupport,
+                                CacheLoadLock loadLock,
+                                MeterRegistry meterRegistry,
+                                CacheGenerations generations,
+                                DeferredInvalidations deferred) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.properties = properties;
+        this.invalidationBus = invalidationBus;
+        this.batchSupport = batchSupport;
+        this.loadLock = loadLock;
+        this.meterRegistry = meterRegistry;
+        this.generations = generations;
+        this.deferred = deferred;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    void evictLocal(String cacheName, String key) {
+        TwoLevelCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.evictLocal(key);
+        }
+    }
+
+    void clearLocal(String cacheName) {
+        generations.forget(cacheName);
+        TwoLevelCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.clearLocal();
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        AppCacheProperties.Spec spec = properties.specFor(name);
+        com.github.benmanes.caffeine.cache.Cache<String, Cache.ValueWrapper> local = Caffeine.newBuilder()
+                .maximumSize(spec.getLocalMaxSize())
+                .expireAfterWrite(spec.getLocalTtl())
+                .build();
+        EarlyRefreshPolicy refreshPolicy = spec.getTtl() != null
+                ? new EarlyRefreshPolicy(spec.getTtl(), spec.getEarlyRefreshBeta())
+                : null;
+        return new TwoLevelCache(name, remote, local, invalidationBus, batchSupport, loadLock, meterRegistry,
+                refreshPolicy, refreshExecutor, generations, deferred);
+    }
+}
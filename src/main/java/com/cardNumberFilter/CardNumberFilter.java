@@ -0,0 +1,143 @@
+package com.cardNumberFilter;
+
+import com.config.CardNumberFilterProperties;
+import com.repositories.PaymentCardRep;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Предфильтр уникальности номера карты: "точно нет" позволяет createCard не ходить в existsByNumber.
+// Пока фильтр не построен (старт, выключен) - всегда "возможно есть".
+// Итоговую гарантию даёт unique constraint в payment_cards.
+@Slf4j
+@Component
+@EnableConfigurationProperties(CardNumberFilterProperties.class)
+public class CardNumberFilter {
+
+    private final PaymentCardRep paymentCardRep;
+    private final TransactionTemplate readOnlyTransaction;
+    private final CardNumberFilterProperties properties;
+
+    private volatile BloomFilter filter;
+    // номера, добавленные во время перестроения, пишутся и в новый фильтр
+    private volatile BloomFilter building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+
+    private final Counter absent;
+    private final Counter maybePresent;
+    private final Counter falsePositives;
+
+    public CardNumberFilter(PaymentCardRep paymentCardRep,
+                            PlatformTransactionManager transactionManager,
+                            CardNumberFilterProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.paymentCardRep = paymentCardRep;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+
+        this.absent = Counter.builder("card.filter.checks").tag("result", "absent").register(meterRegistry);
+        this.maybePresent = Counter.builder("card.filter.checks").tag("result", "maybe").register(meterRegistry);
+        this.falsePositives = Counter.builder("card.filter.false.positives").register(meterRegistry);
+        Gauge.builder("card.filter.memory", this, f -> f.filter == null ? 0 : f.filter.memoryBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("card.filter.expected.fpp", this, f -> f.filter == null ? 0 : f.filter.expectedFalsePositiveRate())
+                .register(meterRegistry);
+        // наблюдаемая доля: "возможно есть", хотя в БД номера нет, среди всех отсутствующих номеров
+        Gauge.builder("card.filter.false.positive.rate", this, CardNumberFilter::observedFalsePositiveRate)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAsync();
+    }
+
+    public boolean mightContain(String number) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        boolean result = current.mightContain(number);
+        (result ? maybePresent : absent).increment();
+        return result;
+    }
+
+    // фильтр сказал "возможно", existsByNumber - "нет"
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    public void add(String number) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(number);
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(number);
+        }
+        inserted.incrementAndGet();
+    }
+
+    // Bloom не умеет удалять: номер остаётся ложным срабатыванием до перестроения
+    public void remove(String number) {
+        long stale = removed.incrementAndGet();
+        if (filter != null && stale > inserted.get() * properties.getRebuildStaleRatio()) {
+            rebuildAsync();
+        }
+    }
+
+    public void rebuildAsync() {
+        if (properties.isEnabled()) {
+            Thread.ofVirtual().name("card-filter-rebuild").start(this::rebuild);
+        }
+    }
+
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long count = paymentCardRep.count();
+            BloomFilter next = BloomFilter.create(
+                    Math.max(properties.getExpectedInsertions(), count * 2), properties.getFalsePositiveRate());
+            building = next;
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<String> numbers = paymentCardRep.streamAllNumbers()) {
+                    numbers.forEach(next::put);
+                }
+            });
+            filter = next;
+            inserted.set(count);
+            removed.set(0);
+            log.info("Card number filter built: {} numbers, {} KB", count, next.memoryBytes() / 1024);
+        } catch (RuntimeException ex) {
+            // без фильтра createCard просто ходит в БД
+            log.warn("Card number filter rebuild failed", ex);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    private double observedFalsePositiveRate() {
+        double fp = falsePositives.count();
+        double negatives = fp + absent.count();
+        return negatives == 0 ? 0 : fp / negatives;
+    }
+}
@@ -0,0 +1,26 @@
+package com.changeEvents;
+
+import com.enums.ChangeType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// userId - владелец карты, для событий пользователя null
+public record ChangeEvent(String entity, Long id, Long userId, ChangeType type, long version, long timestamp) {
+
+    public static final String USER = "user";
+    public static final String CARD = "card";
+
+    public Map<String, String> toFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("entity", entity);
+        fields.put("id", String.valueOf(id));
+        if (userId != null) {
+            fields.put("userId", String.valueOf(userId));
+        }
+        fields.put("type", type.name());
+        fields.put("version", String.valueOf(version));
+        fields.put("ts", String.valueOf(timestamp));
+        return fields;
+    }
+}
@@ -0,0 +1,144 @@
+package com.changeEvents;
+
+import com.config.ChangeEventProperties;
+import com.entities.PaymentCard;
+import com.entities.User;
+import com.enums.ChangeType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Поток изменений пользователей и карт (Redis Stream) вместо опроса GET /users/{id} другими сервисами:
+// потребители читают его через свои consumer group (XREADGROUP) и применяют события по version.
+// События транзакции уходят одним конвейером XADD после коммита; при откате не уходит ничего.
+// Ошибка XADD только логируется - событие теряется, потребитель догонит состояние через GET.
+@Slf4j
+@Component
+@EnableConfigurationProperties(ChangeEventProperties.class)
+public class ChangeEventPublisher {
+
+    // null - Redis не подключен или поток выключен
+    private final StringRedisTemplate redisTemplate;
+    private final ChangeEventProperties properties;
+    private final byte[] streamKey;
+    private final Counter published;
+    private final Counter failed;
+
+    public ChangeEventPublisher(ObjectProvider<StringRedisTemplate> redisTemplate,
+                                ChangeEventProperties properties,
+                                MeterRegistry meterRegistry) {
+        this.redisTemplate = properties.isEnabled() ? redisTemplate.getIfAvailable() : null;
+        this.properties = properties;
+        this.streamKey = properties.getStreamKey().getBytes(StandardCharsets.UTF_8);
+        this.published = Counter.builder("change.events").tag("result", "published").register(meterRegistry);
+        this.failed = Counter.builder("change.events").tag("result", "failed").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createConsumerGroups() {
+        if (redisTemplate == null) {
+            return;
+        }
+        for (String group : properties.getConsumerGroups()) {
+            try {
+                redisTemplate.opsForStream().createGroup(properties.getStreamKey(), ReadOffset.from("0"), group);
+            } catch (RuntimeException ex) {
+                // BUSYGROUP - группа уже создана
+                log.debug("Consumer group {} not created: {}", group, ex.getMessage());
+            }
+        }
+    }
+
+    public void userChanged(User user, ChangeType type) {
+        publish(() -> event(ChangeEvent.USER, user.getId(), null, type, user.getVersion()));
+    }
+
+    public void cardChanged(PaymentCard card, ChangeType type) {
+        Long userId = card.getUser() != null ? card.getUser().getId() : null;
+        publish(() -> event(ChangeEvent.CARD, card.getId(), userId, type, card.getVersion()));
+    }
+
+    // версию читаем после коммита: Hibernate увеличивает её при flush
+    private void publish(Supplier<ChangeEvent> event) {
+        if (redisTemplate == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            send(List.of(event.get()));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Supplier<ChangeEvent>> pending =
+                (List<Supplier<ChangeEvent>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Supplier<ChangeEvent>> created = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            // порядок по умолчанию - после DeferredInvalidations: потребитель, получивший событие,
+            // не должен прочитать из кэша старое значение
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeEventPublisher.this);
+                    if (status == STATUS_COMMITTED) {
+                        send(created.stream().map(Supplier::get).toList());
+                    }
+                }
+            });
+            pending = created;
+        }
+        pending.add(event);
+    }
+
+    private void send(List<ChangeEvent> events) {
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions
+                .maxlen(properties.getMaxLength())
+                .approximateTrimming(true);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (ChangeEvent event : events) {
+                    connection.streamCommands().xAdd(
+                            StreamRecords.rawBytes(rawFields(event)).withStreamKey(streamKey), options);
+                }
+                return null;
+            });
+            published.increment(events.size());
+        } catch (RuntimeException ex) {
+            failed.increment(events.size());
+            log.warn("Failed to publish {} change events", events.size(), ex);
+        }
+    }
+
+    // удаление версию в БД уже не увеличит - событие удаления идёт следующей версией
+    private static ChangeEvent event(String entity, Long id, Long userId, ChangeType type, Long version) {
+        long current = version != null ? version : 0;
+        return new ChangeEvent(entity, id, userId, type,
+                type == ChangeType.DELETED ? current + 1 : current, System.currentTimeMillis());
+    }
+
+    private static Map<byte[], byte[]> rawFields(ChangeEvent event) {
+        Map<byte[], byte[]> raw = new LinkedHashMap<>();
+        event.toFields().forEach((field, value) ->
+                raw.put(field.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8)));
+        return raw;
+    }
+}
@@ -0,0 +1,80 @@
+package com.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.cache")
+public class AppCacheProperties {
+
+    // канал Redis pub/sub, по которому узлы сбрасывают друг другу L1
+    private String invalidationChannel = "user-service:cache-invalidation";
+
+    // пространство ключей сервиса: Redis может быть общим с другими сервисами
+    private String keyPrefix = "user-service";
+
+    // при старте сервиса кэши переходят на новое поколение (раньше - KEYS * и DEL)
+    private boolean clearOnStartup = true;
+
+    // размер пачки SCAN/UNLINK при удалении ключей старых поколений
+    private int sweepBatchSize = 500;
+
+    // удалить и ключи формата до поколений (<cache>::<key>); включать, только если Redis не общий
+    private boolean sweepLegacyKeys = false;
+
+    // инвалидации, не дошедшие до Redis после коммита; сверх лимита кэш очищается целиком
+    private int outboxCapacity = 1_000;
+
+    private Duration outboxRetryInterval = Duration.ofSeconds(5);
+
+    private Spec defaults = new Spec();
+
+    // настройки по имени кэша: users, cards, userCards
+    private Map<String, Spec> specs = new HashMap<>();
+
+    private SingleFlight singleFlight = new SingleFlight();
+
+    public Spec specFor(String cacheName) {
+        return specs.getOrDefault(cacheName, defaults);
+    }
+
+    @Getter
+    @Setter
+    public static class Spec {
+
+        private long localMaxSize = 1_000;
+
+        private Duration localTtl = Duration.ofSeconds(30);
+
+        // логический TTL записи, null - без истечения и без фонового обновления
+        private Duration ttl;
+
+        // сколько после ttl запись ещё отдаётся, пока идёт фоновое обновление; в Redis ключ живёт ttl + staleTtl
+        private Duration staleTtl = Duration.ZERO;
+
+        // XFetch: больше - раньше обновление; 1.0 - значение из статьи
+        private double earlyRefreshBeta = 1.0;
+    }
+
+    @Getter
+    @Setter
+    public static class SingleFlight {
+
+        // схлопывание промахов между узлами через блокировку в Redis; внутри узла работает всегда
+        private boolean distributedLock = false;
+
+        // должен покрывать загрузку из БД; зависший владелец держит ключ не дольше ttl
+        private Duration lockTtl = Duration.ofSeconds(5);
+
+        // ожидание чужой загрузки, после него узел грузит сам
+        private Duration lockWait = Duration.ofSeconds(2);
+
+        private Duration pollInterval = Duration.ofMillis(50);
+    }
+}
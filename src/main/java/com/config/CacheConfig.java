@@ -0,0 +1,108 @@
+package com.config;
+
+import com.cache.CacheGenerations;
+import com.cache.CacheInvalidationBus;
+import com.cache.CacheLoadLock;
+import com.cache.CacheValueCodec;
+import com.cache.DeferredInvalidations;
+import com.cache.RedisCacheBatchSupport;
+import com.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
+@EnableConfigurationProperties(AppCacheProperties.class)
+public class CacheConfig {
+
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(StringRedisTemplate redisTemplate,
+                                                     AppCacheProperties properties) {
+        return new CacheInvalidationBus(redisTemplate, properties.getInvalidationChannel());
+    }
+
+    @Bean
+    public CacheGenerations cacheGenerations(StringRedisTemplate redisTemplate, AppCacheProperties properties) {
+        return new CacheGenerations(redisTemplate, properties.getKeyPrefix());
+    }
+
+    // @Scheduled повтор outbox - поэтому отдельный бин, а не часть менеджера
+    @Bean
+    public DeferredInvalidations deferredInvalidations(RedisConnectionFactory connectionFactory,
+                                                       AppCacheProperties properties,
+                                                       MeterRegistry meterRegistry) {
+        return new DeferredInvalidations(connectionFactory, properties.getOutboxCapacity(), meterRegistry);
+    }
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             StringRedisTemplate redisTemplate,
+                                             AppCacheProperties properties,
+                                             CacheInvalidationBus invalidationBus,
+                                             CacheGenerations generations,
+                                             DeferredInvalidations deferredInvalidations,
+                                             MeterRegistry meterRegistry) {
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        properties.getSpecs().forEach((name, spec) ->
+                cacheConfigurations.put(name, redisCacheConfiguration(name, spec, generations, meterRegistry)));
+
+        // clear() кэшей идёт через поколения; если RedisCache всё же чистится сам - SCAN пачками, не KEYS
+        RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory,
+                BatchStrategies.scan(properties.getSweepBatchSize()));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter)
+                .cacheDefaults(redisCacheConfiguration("default", properties.getDefaults(), generations,
+                        meterRegistry))
+                .withInitialCacheConfigurations(cacheConfigurations)
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        AppCacheProperties.SingleFlight singleFlight = properties.getSingleFlight();
+        CacheLoadLock loadLock = singleFlight.isDistributedLock()
+                ? new CacheLoadLock(redisTemplate, singleFlight.getLockTtl(),
+                        singleFlight.getLockWait(), singleFlight.getPollInterval())
+                : null;
+        return new TwoLevelCacheManager(redisCacheManager, properties, invalidationBus,
+                new RedisCacheBatchSupport(connectionFactory), loadLock, meterRegistry, generations,
+                deferredInvalidations);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                           CacheInvalidationBus invalidationBus,
+                                                                           TwoLevelCacheManager cacheManager,
+                                                                           AppCacheProperties properties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> invalidationBus.receive(message, cacheManager),
+                new ChannelTopic(properties.getInvalidationChannel()));
+        return container;
+    }
+
+    // свой экземпляр кодека на кеш - метрики размера и времени с тегом cache
+    private RedisCacheConfiguration redisCacheConfiguration(String name, AppCacheProperties.Spec spec,
+                                                            CacheGenerations generations,
+                                                            MeterRegistry meterRegistry) {
+        CacheValueCodec codec = new CacheValueCodec(name, meterRegistry, getClass().getClassLoader());
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .computePrefixWith(generations::prefixFor)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(codec));
+        if (spec.getTtl() != null) {
+            configuration = configuration.entryTtl(spec.getTtl().plus(spec.getStaleTtl()));
+        }
+        return configuration;
+    }
+}
@@ -0,0 +1,22 @@
+package com.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.card-filter")
+public class CardNumberFilterProperties {
+
+    // false - фильтр всегда отвечает "возможно есть", createCard ходит в БД как раньше
+    private boolean enabled = true;
+
+    // минимальная ёмкость; при перестроении берётся max(это, 2 * число карт)
+    private long expectedInsertions = 1_000_000;
+
+    private double falsePositiveRate = 0.01;
+
+    // доля удалённых номеров (бит они не освобождают), после которой фильтр перестраивается
+    private double rebuildStaleRatio = 0.25;
+}
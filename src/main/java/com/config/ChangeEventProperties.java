@@ -0,0 +1,26 @@
+package com.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.change-events")
+public class ChangeEventProperties {
+
+    // false (или Redis не подключен) - события не публикуются
+    private boolean enabled = true;
+
+    private String streamKey = "user-service:changes";
+
+    // XADD MAXLEN ~: сколько последних событий хранит поток
+    private long maxLength = 1_000_000;
+
+    // группы потребителей, создаваемые при старте с начала потока: события до первого
+    // подключения сервиса-потребителя не теряются
+    private List<String> consumerGroups = new ArrayList<>();
+}
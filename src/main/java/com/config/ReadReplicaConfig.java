@@ -0,0 +1,120 @@
+package com.config;
+
+import com.datasource.ReadYourWrites;
+import com.datasource.ReplicaRoutingDataSource;
+import com.datasource.ReplicationLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Чтения (@Transactional(readOnly = true), в том числе методы репозиториев) - в реплики,
+// запись и всё без транзакции (Liquibase) - в primary.
+// Пулы не регистрируются бинами. В режиме виртуальных потоков каждый пул получает свой лимит по своему
+// maximumPoolSize здесь же; маршрутизатор VirtualThreadConfig не оборачивает.
+@Configuration
+@ConditionalOnProperty(name = "app.read-replicas.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class ReadReplicaConfig implements DisposableBean {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public ReadYourWrites readYourWrites(ReadReplicaProperties properties) {
+        return new ReadYourWrites(properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    public ReplicationLagMonitor replicationLagMonitor(DataSourceProperties dataSourceProperties,
+                                                       ReadReplicaProperties properties,
+                                                       Environment environment,
+                                                       MeterRegistry meterRegistry,
+                                                       ObjectProvider<VirtualThreadProperties> virtualThreads) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < properties.getInstances().size(); i++) {
+            ReadReplicaProperties.Instance instance = properties.getInstances().get(i);
+            String name = "replica-" + i;
+            String username = instance.getUsername() != null
+                    ? instance.getUsername()
+                    : dataSourceProperties.determineUsername();
+            String password = instance.getPassword() != null
+                    ? instance.getPassword()
+                    : dataSourceProperties.determinePassword();
+            HikariDataSource replica = pool(dataSourceProperties, environment, name, instance.getUrl(),
+                    username, password);
+            replica.setReadOnly(true);
+            replicas.put(name, limited(replica, virtualThreads));
+        }
+        return new ReplicationLagMonitor(replicas, properties.getLagQuery(), properties.getMaxLag(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties,
+                                 Environment environment,
+                                 ReplicationLagMonitor lagMonitor,
+                                 ReadYourWrites readYourWrites,
+                                 MeterRegistry meterRegistry,
+                                 ObjectProvider<VirtualThreadProperties> virtualThreads) {
+        HikariDataSource primary = pool(dataSourceProperties, environment, "primary",
+                dataSourceProperties.determineUrl(), dataSourceProperties.determineUsername(),
+                dataSourceProperties.determinePassword());
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(limited(primary, virtualThreads),
+                lagMonitor, readYourWrites, meterRegistry);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // по умолчанию Spring держит соединение до закрытия EntityManager: при open-in-view
+    // первая транзакция запроса выбирала бы узел и для всех следующих, включая запись
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    // VirtualThreadProperties есть только с spring.threads.virtual.enabled=true
+    private static DataSource limited(HikariDataSource pool, ObjectProvider<VirtualThreadProperties> virtualThreads) {
+        VirtualThreadProperties props = virtualThreads.getIfAvailable();
+        return props != null ? VirtualThreadConfig.limit(pool, props) : pool;
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    // настройки spring.datasource.hikari общие для primary и реплик
+    private HikariDataSource pool(DataSourceProperties dataSourceProperties, Environment environment,
+                                  String name, String url, String username, String password) {
+        HikariDataSource pool = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pools.add(pool);
+        return pool;
+    }
+}
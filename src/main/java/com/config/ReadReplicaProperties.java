@@ -0,0 +1,45 @@
+package com.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.read-replicas")
+public class ReadReplicaProperties {
+
+    // false - всё через spring.datasource, как раньше
+    private boolean enabled = false;
+
+    private List<Instance> instances = new ArrayList<>();
+
+    // реплика с большим отставанием чтений не получает
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    // после записи чтения того же пользователя идут в primary; должно быть больше max-lag
+    private Duration readYourWritesWindow = Duration.ofSeconds(10);
+
+    // отставание в секундах; NULL (не реплика, отставание неизвестно) - реплика считается недоступной
+    private String lagQuery = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN NULL "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    @Getter
+    @Setter
+    public static class Instance {
+
+        private String url;
+
+        // null - как у spring.datasource
+        private String username;
+
+        private String password;
+    }
+}
@@ -0,0 +1,29 @@
+package com.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.security")
+public class SecurityProperties {
+
+    // HMAC-ключ подписи JWT (не короче 256 бит); пусто - Bearer-токены не принимаются
+    private String jwtSecret;
+
+    // claim со списком ролей
+    private String rolesClaim = "roles";
+
+    private Duration clockSkew = Duration.ofSeconds(30);
+
+    // кеш проверенных токенов: запись живёт до exp токена, но не дольше verifiedTtl
+    private long verifiedCacheSize = 100_000;
+
+    private Duration verifiedTtl = Duration.ofMinutes(15);
+
+    // доверять X-User-Id / X-User-Roles от gateway, если Bearer-токена нет
+    private boolean trustGatewayHeaders = true;
+}
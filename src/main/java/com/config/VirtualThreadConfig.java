@@ -0,0 +1,60 @@
+package com.config;
+
+import com.datasource.ConnectionLimitingDataSource;
+import com.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+// Режим виртуальных потоков: Tomcat, @Async и планировщик переключает сам Spring Boot
+// (spring.threads.virtual.enabled=true), здесь - только ограничение доступа к пулу соединений.
+// Лимит - на физический пул: маршрутизатор реплик не оборачивается, его пулы ограничивает ReadReplicaConfig.
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@EnableConfigurationProperties(VirtualThreadProperties.class)
+public class VirtualThreadConfig {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor(
+            ObjectProvider<VirtualThreadProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource
+                        || isReplicaRouting(dataSource)) {
+                    return bean;
+                }
+                return limit(dataSource, properties.getObject());
+            }
+        };
+    }
+
+    public static DataSource limit(DataSource dataSource, VirtualThreadProperties props) {
+        int permits = props.getDbPermits() > 0 ? props.getDbPermits() : poolSize(dataSource);
+        return new ConnectionLimitingDataSource(dataSource, permits,
+                props.getDbAcquireTimeout(), props.getDbMaxWaiting());
+    }
+
+    // ленивый прокси над маршрутизатором: один семафор на primary и все реплики и разрешение
+    // на дескриптор, который может так и не взять соединение
+    private static boolean isReplicaRouting(DataSource dataSource) {
+        return dataSource instanceof LazyConnectionDataSourceProxy lazy
+                && lazy.getTargetDataSource() instanceof ReplicaRoutingDataSource;
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            return hikari.getMaximumPoolSize();
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+}
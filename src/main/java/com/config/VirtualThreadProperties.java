@@ -0,0 +1,21 @@
+package com.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.virtual-threads")
+public class VirtualThreadProperties {
+
+    // 0 - взять maximumPoolSize из Hikari
+    private int dbPermits = 0;
+
+    private Duration dbAcquireTimeout = Duration.ofSeconds(5);
+
+    // сколько запросов может ждать соединение, остальные получают отказ сразу
+    private int dbMaxWaiting = 1_000;
+}
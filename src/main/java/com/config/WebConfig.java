@@ -0,0 +1,23 @@
+package com.config;
+
+import com.security.AuthPrincipalResolver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+@EnableConfigurationProperties(SecurityProperties.class)
+public class WebConfig implements WebMvcConfigurer {
+
+    private final AuthPrincipalResolver authPrincipalResolver;
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(authPrincipalResolver);
+    }
+}
@@ -0,0 +1,51 @@
+package com.controllers;
+
+import com.dto.CacheStatsDto;
+import com.security.AuthPrincipal;
+import com.services.CacheAdminService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/caches")
+@RequiredArgsConstructor
+public class CacheAdminController {
+
+    private final CacheAdminService cacheAdminService;
+
+    // ALL CACHES (ADMIN only): счётчики, L1, число ключей и объём в Redis
+    @GetMapping
+    public ResponseEntity<List<CacheStatsDto>> getAllStats(AuthPrincipal principal) {
+        return ResponseEntity.ok(cacheAdminService.getAllStats(principal.roles()));
+    }
+
+    // ONE CACHE (ADMIN only) + выборка горячих ключей L1
+    @GetMapping("/{cacheName}")
+    public ResponseEntity<CacheStatsDto> getStats(
+            @PathVariable String cacheName,
+            @RequestParam(defaultValue = "20") int hotKeys,
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(cacheAdminService.getStats(cacheName, hotKeys, principal.roles()));
+    }
+
+    // RAW VALUE (ADMIN only)
+    @GetMapping("/{cacheName}/keys/{key}")
+    public ResponseEntity<Object> getValue(
+            @PathVariable String cacheName,
+            @PathVariable String key,
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(cacheAdminService.getValue(cacheName, key, principal.roles()));
+    }
+
+    // CLEAR CACHE (ADMIN only): новое поколение ключей
+    @DeleteMapping("/{cacheName}")
+    public ResponseEntity<Void> clear(@PathVariable String cacheName, AuthPrincipal principal) {
+        cacheAdminService.clear(cacheName, principal.roles());
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.controllers;
+
+import com.dto.PaymentCardDto;
+import com.dto.UserDto;
+import org.springframework.http.CacheControl;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Сильный ETag из id и version (@Version растёт при каждом изменении строки), а не из тела ответа:
+// совпадение If-None-Match решается по DTO из кэша, и HttpEntityMethodProcessor отдаёт 304 без сериализации JSON.
+// Карты входят в тег пользователя - их изменение не увеличивает версию самого пользователя.
+final class ETags {
+
+    // клиент хранит ответ, но перед использованием всегда переспрашивает сервер; общие кэши - нет (номера карт)
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private ETags() {
+    }
+
+    static String of(UserDto user) {
+        StringBuilder tag = new StringBuilder("user:").append(user.getId()).append(':').append(user.getVersion());
+        if (user.getPaymentCards() != null) {
+            appendCards(tag, user.getPaymentCards());
+        }
+        return quoted(tag);
+    }
+
+    static String of(PaymentCardDto card) {
+        return quoted(new StringBuilder("card:").append(card.getId()).append(':').append(card.getVersion()));
+    }
+
+    // список карт пользователя: меняется и при изменении карты, и при добавлении/удалении
+    static String ofCards(Long userId, List<PaymentCardDto> cards) {
+        StringBuilder tag = new StringBuilder("cards:").append(userId);
+        appendCards(tag, cards);
+        return quoted(tag);
+    }
+
+    private static void appendCards(StringBuilder tag, List<PaymentCardDto> cards) {
+        for (PaymentCardDto card : cards) {
+            tag.append(',').append(card.getId()).append(':').append(card.getVersion());
+        }
+    }
+
+    private static String quoted(StringBuilder tag) {
+        return '"' + DigestUtils.md5DigestAsHex(tag.toString().getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+}
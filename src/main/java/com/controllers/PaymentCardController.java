@@ -1,22 +1,26 @@
 package com.controllers;
 
+import com.dto.CursorPageDto;
 import com.dto.PaymentCardDto;
+import com.dto.PaymentCardPatchDto;
+import com.enums.DataFormat;
+import com.security.AuthPrincipal;
+import com.services.DataExportService;
 import com.services.PaymentCardService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/cards")
@@ -25,24 +29,16 @@ import java.util.stream.Collectors;
 public class PaymentCardController {
 
     private final PaymentCardService paymentCardService;
-
-    private Set<String> parseRoles(String rolesHeader) {
-        if (rolesHeader == null || rolesHeader.isBlank()) return Set.of();
-        return Arrays.stream(rolesHeader.split(","))
-                .map(String::trim)
-                .collect(Collectors.toSet());
-    }
+    private final DataExportService dataExportService;
 
     // CREATE CARD (USER or ADMIN)
     @PostMapping("/user/{userId}")
     public ResponseEntity<PaymentCardDto> createCard(
             @PathVariable @Min(1) Long userId,
             @Valid @RequestBody PaymentCardDto dto,
-            @RequestHeader("X-User-Id") Long requesterId,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        PaymentCardDto created = paymentCardService.createCard(userId, dto, requesterId, roles);
+        PaymentCardDto created = paymentCardService.createCard(userId, dto, principal.userId(), principal.roles());
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
@@ -50,32 +46,59 @@ public class PaymentCardController {
     @GetMapping("/{id}")
     public ResponseEntity<PaymentCardDto> getCardById(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Id") Long requesterId,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        return ResponseEntity.ok(paymentCardService.getCardById(id, requesterId, roles));
+        PaymentCardDto card = paymentCardService.getCardById(id, principal.userId(), principal.roles());
+        return ResponseEntity.ok()
+                .eTag(ETags.of(card))
+                .cacheControl(ETags.REVALIDATE)
+                .body(card);
     }
 
     // GET ALL CARDS (ADMIN only)
     @GetMapping
     public ResponseEntity<Page<PaymentCardDto>> getAllCards(
             @PageableDefault Pageable pageable,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(paymentCardService.getAllCards(pageable, principal.roles()));
+    }
+
+    // SCROLL CARDS BY CURSOR (ADMIN only)
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageDto<PaymentCardDto>> scrollCards(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(paymentCardService.scrollCards(after, size, principal.roles()));
+    }
+
+    // EXPORT ALL CARDS (ADMIN only): поток NDJSON/CSV из серверного курсора
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @RequestParam(defaultValue = "ndjson") String format,
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        return ResponseEntity.ok(paymentCardService.getAllCards(pageable, roles));
+        DataFormat dataFormat = DataFormat.fromParam(format);
+        return ResponseEntity.ok()
+                .contentType(dataFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=cards." + dataFormat.extension())
+                .body(dataExportService.exportCards(dataFormat, principal.roles()));
     }
 
     // GET CARDS BY USER ID (USER can only see own cards, ADMIN can see all)
     @GetMapping("/users/{userId}")
     public ResponseEntity<List<PaymentCardDto>> getCardsByUserId(
             @PathVariable @Min(1) Long userId,
-            @RequestHeader("X-User-Id") Long requesterId,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        return ResponseEntity.ok(paymentCardService.getCardsByUserId(userId, requesterId, roles));
+        List<PaymentCardDto> cards = paymentCardService.getCardsByUserId(userId, principal.userId(), principal.roles());
+        return ResponseEntity.ok()
+                .eTag(ETags.ofCards(userId, cards))
+                .cacheControl(ETags.REVALIDATE)
+                .body(cards);
     }
 
     // UPDATE CARD (USER or ADMIN)
@@ -83,21 +106,29 @@ public class PaymentCardController {
     public ResponseEntity<PaymentCardDto> updateCard(
             @PathVariable @Min(1) Long id,
             @Valid @RequestBody PaymentCardDto dto,
-            @RequestHeader("X-User-Id") Long requesterId,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(paymentCardService.updateCard(id, dto, principal.userId(), principal.roles()));
+    }
+
+    // PATCH CARD (USER or ADMIN): только переданные поля; version в теле - 409 при параллельном изменении
+    @PatchMapping("/{id}")
+    public ResponseEntity<PaymentCardDto> patchCard(
+            @PathVariable @Min(1) Long id,
+            @Valid @RequestBody PaymentCardPatchDto patch,
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        return ResponseEntity.ok(paymentCardService.updateCard(id, dto, requesterId, roles));
+        PaymentCardDto patched = paymentCardService.patchCard(id, patch, principal.userId(), principal.roles());
+        return ResponseEntity.ok().eTag(ETags.of(patched)).body(patched);
     }
 
     // DEACTIVATE CARD (ADMIN only)
     @PutMapping("/{id}/deactivate")
     public ResponseEntity<Void> deactivateCard(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        paymentCardService.deactivateCard(id, roles);
+        paymentCardService.deactivateCard(id, principal.roles());
         return ResponseEntity.ok().build();
     }
 
@@ -105,10 +136,9 @@ public class PaymentCardController {
     @PutMapping("/{id}/activate")
     public ResponseEntity<Void> activateCard(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        paymentCardService.activateCard(id, roles);
+        paymentCardService.activateCard(id, principal.roles());
         return ResponseEntity.ok().build();
     }
 
@@ -116,10 +146,9 @@ public class PaymentCardController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteCard(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        paymentCardService.deleteCard(id, roles);
+        paymentCardService.deleteCard(id, principal.roles());
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
@@ -1,23 +1,34 @@
 package com.controllers;
 
+import com.dto.CursorPageDto;
 import com.dto.UserDto;
+import com.dto.UserImportResultDto;
+import com.dto.UserPatchDto;
+import com.enums.DataFormat;
+import com.security.AuthPrincipal;
+import com.services.DataExportService;
+import com.services.UserImportService;
 import com.services.UserService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Arrays;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.io.InputStream;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
@@ -26,65 +37,98 @@ import java.util.stream.Collectors;
 public class UserController {
 
     private final UserService userService;
-
-    private Set<String> parseRoles(String rolesHeader) {
-        if (rolesHeader == null || rolesHeader.isBlank()) {
-            return Set.of();
-        }
-        return Arrays.stream(rolesHeader.split(","))
-                .map(String::trim)
-                .collect(Collectors.toSet());
-    }
+    private final UserImportService userImportService;
+    private final DataExportService dataExportService;
 
     // GET BY EMAIL (ADMIN only)
     @GetMapping("/by-email")
     public ResponseEntity<UserDto> getUserByEmail(
             @RequestParam @Email String email,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-
-        System.out.println("rolesHeader: " + roles);
-
-        return ResponseEntity.ok(userService.getUserByEmail(email, roles));
+        return ResponseEntity.ok(userService.getUserByEmail(email, principal.roles()));
     }
 
     // CREATE USER (ADMIN only)
     @PostMapping
     public ResponseEntity<UserDto> createUser(
             @Valid @RequestBody UserDto userDto,
-            @RequestHeader(value = "X-User-Roles", required = false) String rolesHeader,
-            @RequestHeader(value = "X-Service-Call", required = false, defaultValue = "false") boolean isServiceCall
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-
         // Передаём флаг в сервис
-        UserDto created = userService.createUser(userDto, roles, isServiceCall);
+        UserDto created = userService.createUser(userDto, principal.roles(), principal.serviceCall());
 
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
-    // GET USER BY ID (ADMIN or USER)
+    // BULK IMPORT (ADMIN only): тело читается потоком, NDJSON или CSV с заголовком
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<UserImportResultDto> importUsers(
+            InputStream body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            AuthPrincipal principal
+    ) {
+        DataFormat format = "csv".equalsIgnoreCase(contentType.getSubtype()) ? DataFormat.CSV : DataFormat.NDJSON;
+        return ResponseEntity.ok(userImportService.importUsers(body, format, principal.roles(), principal.serviceCall()));
+    }
+
+    // EXPORT ALL USERS (ADMIN only): поток NDJSON/CSV из серверного курсора
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "ndjson") String format,
+            AuthPrincipal principal
+    ) {
+        DataFormat dataFormat = DataFormat.fromParam(format);
+        return ResponseEntity.ok()
+                .contentType(dataFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=users." + dataFormat.extension())
+                .body(dataExportService.exportUsers(dataFormat, principal.roles()));
+    }
+
+    // GET USER BY ID (ADMIN or USER): If-None-Match с текущим ETag -> 304 без тела
     @GetMapping("/{id}")
     public ResponseEntity<UserDto> getUserById(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Id") Long requesterId,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        return ResponseEntity.ok(userService.getUserById(id, requesterId, roles));
+        UserDto user = userService.getUserById(id, principal.userId(), principal.roles());
+        return ResponseEntity.ok()
+                .eTag(ETags.of(user))
+                .cacheControl(ETags.REVALIDATE)
+                .body(user);
+    }
+
+    // GET USERS BY IDS (ADMIN, or USER for own id only)
+    @PostMapping("/batch")
+    public ResponseEntity<List<UserDto>> getUsersByIds(
+            @RequestBody @NotEmpty List<@NotNull @Min(1) Long> ids,
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(userService.getUsersByIds(ids, principal.userId(), principal.roles()));
     }
 
     // GET ALL USERS (ADMIN only)
     @GetMapping
     public ResponseEntity<Page<UserDto>> getAllUsers(
-            @RequestParam(required = false) @Size(min = 2, max = 50) String name,
-            @RequestParam(required = false) @Size(min = 2, max = 50) String surname,
+            @RequestParam(required = false) @Size(min = 3, max = 50) String name,
+            @RequestParam(required = false) @Size(min = 3, max = 50) String surname,
             @PageableDefault Pageable pageable,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(userService.getAllUsers(name, surname, pageable, principal.roles()));
+    }
+
+    // SCROLL USERS BY CURSOR (ADMIN only)
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageDto<UserDto>> scrollUsers(
+            @RequestParam(required = false) @Size(min = 3, max = 50) String name,
+            @RequestParam(required = false) @Size(min = 3, max = 50) String surname,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        return ResponseEntity.ok(userService.getAllUsers(name, surname, pageable, roles));
+        return ResponseEntity.ok(userService.scrollUsers(name, surname, after, size, principal.roles()));
     }
 
     // UPDATE USER (ADMIN or USER)
@@ -92,21 +136,29 @@ public class UserController {
     public ResponseEntity<UserDto> updateUser(
             @PathVariable @Min(1) Long id,
             @Valid @RequestBody UserDto userDto,
-            @RequestHeader("X-User-Id") Long requesterId,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
+    ) {
+        return ResponseEntity.ok(userService.updateUser(id, userDto, principal.userId(), principal.roles()));
+    }
+
+    // PATCH USER (ADMIN or USER): только переданные поля; version в теле - 409 при параллельном изменении
+    @PatchMapping("/{id}")
+    public ResponseEntity<UserDto> patchUser(
+            @PathVariable @Min(1) Long id,
+            @Valid @RequestBody UserPatchDto patch,
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        return ResponseEntity.ok(userService.updateUser(id, userDto, requesterId, roles));
+        UserDto patched = userService.patchUser(id, patch, principal.userId(), principal.roles());
+        return ResponseEntity.ok().eTag(ETags.of(patched)).body(patched);
     }
 
     // DEACTIVATE USER (ADMIN only)
     @PutMapping("/{id}/deactivate")
     public ResponseEntity<Void> deactivateUser(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        userService.deactivateUser(id, roles);
+        userService.deactivateUser(id, principal.roles());
         return ResponseEntity.ok().build();
     }
 
@@ -114,10 +166,9 @@ public class UserController {
     @PutMapping("/{id}/activate")
     public ResponseEntity<Void> activateUser(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        userService.activateUser(id, roles);
+        userService.activateUser(id, principal.roles());
         return ResponseEntity.ok().build();
     }
 
@@ -125,10 +176,9 @@ public class UserController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(
             @PathVariable @Min(1) Long id,
-            @RequestHeader("X-User-Roles") String rolesHeader
+            AuthPrincipal principal
     ) {
-        Set<String> roles = parseRoles(rolesHeader);
-        userService.deleteUser(id, roles);
+        userService.deleteUser(id, principal.roles());
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.datasource;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+// Чтения, результат которых уходит в общий кэш, идут в primary: значение с отстающей реплики
+// осталось бы в кэше до TTL и для всех узлов. Отметка в потоке, ReplicaRoutingDataSource
+// смотрит на неё при выборе соединения; без реплик ни на что не влияет.
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> FORCED = new ThreadLocal<>();
+
+    private PrimaryReads() {
+    }
+
+    public static <T> Callable<T> of(Callable<T> loader) {
+        return () -> {
+            Boolean previous = FORCED.get();
+            FORCED.set(Boolean.TRUE);
+            try {
+                return loader.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T> T get(Supplier<T> reader) {
+        Boolean previous = FORCED.get();
+        FORCED.set(Boolean.TRUE);
+        try {
+            return reader.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    static boolean forced() {
+        return FORCED.get() != null;
+    }
+
+    private static void restore(Boolean previous) {
+        if (previous == null) {
+            FORCED.remove();
+        } else {
+            FORCED.set(previous);
+        }
+    }
+}
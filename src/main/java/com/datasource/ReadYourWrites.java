@@ -0,0 +1,54 @@
+package com.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.security.AuthPrincipal;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+
+// Пользователь, только что записавший данные, читает из primary: реплика может ещё не догнать.
+// Отметки в памяти узла; на других узлах отставание ограничено max-lag реплик.
+public class ReadYourWrites {
+
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReadYourWrites(Duration window) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    // соединение primary для пишущей транзакции: отметка ставится только после коммита
+    void recordOnCommit() {
+        Long requester = currentRequester();
+        if (requester == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(requester, Boolean.TRUE);
+            }
+        });
+    }
+
+    boolean recentlyWrote() {
+        Long requester = currentRequester();
+        return requester != null && recentWriters.getIfPresent(requester) != null;
+    }
+
+    // вызывающий текущего HTTP-запроса (AuthPrincipalResolver); вне запроса и у сервисных вызовов без id - null
+    private static Long currentRequester() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object principal = attributes.getAttribute(AuthPrincipal.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return principal instanceof AuthPrincipal authPrincipal ? authPrincipal.userId() : null;
+    }
+}
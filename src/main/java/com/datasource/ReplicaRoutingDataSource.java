@@ -0,0 +1,70 @@
+package com.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+// readOnly-транзакции - в реплику, остальное - в primary. Ключ выбирается при первом запросе к БД,
+// поэтому снаружи нужен LazyConnectionDataSourceProxy: к этому моменту флаг readOnly транзакции уже выставлен.
+// Загрузки в общий кэш (PrimaryReads) читают из primary, даже в readOnly-транзакции.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicationLagMonitor lagMonitor;
+    private final ReadYourWrites readYourWrites;
+    private final Counter replicaReads;
+    private final Counter laggingReads;
+    private final Counter readYourWritesReads;
+    private final Counter cacheLoadReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicationLagMonitor lagMonitor,
+                                    ReadYourWrites readYourWrites, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.readYourWrites = readYourWrites;
+        Map<Object, Object> targets = new HashMap<>(lagMonitor.dataSources());
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.replicaReads = readCounter(meterRegistry, "replica", "replica");
+        this.laggingReads = readCounter(meterRegistry, PRIMARY, "lag");
+        this.readYourWritesReads = readCounter(meterRegistry, PRIMARY, "read-your-writes");
+        this.cacheLoadReads = readCounter(meterRegistry, PRIMARY, "cache-load");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readYourWrites.recordOnCommit();
+            return PRIMARY;
+        }
+        if (PrimaryReads.forced()) {
+            cacheLoadReads.increment();
+            return PRIMARY;
+        }
+        if (readYourWrites.recentlyWrote()) {
+            readYourWritesReads.increment();
+            return PRIMARY;
+        }
+        String replica = lagMonitor.pickReplica();
+        if (replica == null) {
+            laggingReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return replica;
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("db.reads")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
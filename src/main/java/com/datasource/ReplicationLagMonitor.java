@@ -0,0 +1,107 @@
+package com.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Отставание реплик опрашивается по расписанию, маршрутизация читает только последнее значение.
+// Неизвестное отставание (ошибка запроса, NULL) - реплика не используется до следующей успешной проверки.
+@Slf4j
+public class ReplicationLagMonitor {
+
+    private static final int QUERY_TIMEOUT_SECONDS = 2;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicationLagMonitor(Map<String, DataSource> replicas, String lagQuery, Duration maxLag,
+                                 MeterRegistry meterRegistry) {
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            Gauge.builder("db.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("replica", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.read-replicas.lag-check-interval:1s}")
+    public void check() {
+        replicas.forEach(this::check);
+    }
+
+    // round robin среди реплик с допустимым отставанием; null - читать из primary
+    public String pickReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.lagSeconds <= maxLagSeconds) { // NaN - всегда false
+                return replica.name;
+            }
+        }
+        return null;
+    }
+
+    Map<String, DataSource> dataSources() {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        replicas.forEach(replica -> dataSources.put(replica.name, replica.dataSource));
+        return dataSources;
+    }
+
+    private void check(Replica replica) {
+        double lag;
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                lag = resultSet.next() ? resultSet.getDouble(1) : Double.NaN;
+                if (resultSet.wasNull()) {
+                    lag = Double.NaN;
+                }
+            }
+        } catch (SQLException | RuntimeException ex) {
+            log.debug("Replication lag check of {} failed: {}", replica.name, ex.getMessage());
+            lag = Double.NaN;
+        }
+        boolean wasUsable = replica.lagSeconds <= maxLagSeconds;
+        replica.lagSeconds = lag;
+        boolean usable = lag <= maxLagSeconds;
+        if (wasUsable != usable) {
+            log.info("Replica {} {} for reads (lag {}s)", replica.name, usable ? "enabled" : "disabled", lag);
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile double lagSeconds = Double.NaN;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// Состояние одного кэша для /admin/caches. Local - L1 этого узла, remote - Redis по текущему поколению.
+@Data
+@Builder
+public class CacheStatsDto {
+
+    private String name;
+
+    // null - кэш без поколений (simple/test)
+    private Long generation;
+
+    // null - без TTL
+    private String ttl;
+
+    private double hits;
+
+    private double misses;
+
+    private double hitRatio;
+
+    private double loads;
+
+    private double meanLoadMillis;
+
+    private long localSize;
+
+    // самые частые ключи по частотной оценке Caffeine, только этот узел
+    private List<String> localHotKeys;
+
+    // null - remote не Redis
+    private Long remoteKeys;
+
+    // подсчёт остановлен на лимите сканирования, remoteKeys - нижняя граница
+    private boolean remoteKeysTruncated;
+
+    // MEMORY USAGE по выборке ключей, экстраполированное на remoteKeys
+    private Long remoteMemoryBytes;
+}
@@ -31,4 +31,6 @@ public class PaymentCardDto implements Serializable {
     private Boolean active;
 
     private Long userId;
+
+    private Long version;
 }
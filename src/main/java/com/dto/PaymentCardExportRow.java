@@ -0,0 +1,7 @@
+package com.dto;
+
+import java.time.LocalDate;
+
+public record PaymentCardExportRow(Long id, Long userId, String number, String holder,
+                                   LocalDate expirationDate, Boolean active) {
+}
@@ -0,0 +1,31 @@
+package com.dto;
+
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// PATCH: null - поле не меняется. Номер меняется только через PUT: фильтру номеров нужен старый номер
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentCardPatchDto {
+
+    @Size(max = 100, message = "Card holder cannot be longer than 100 characters")
+    private String holder;
+
+    @Future(message = "Expiration date must be in the future")
+    private LocalDate expirationDate;
+
+    // версия, которую видел клиент; null - без проверки на параллельное изменение
+    private Long version;
+
+    public boolean hasChanges() {
+        return holder != null || expirationDate != null;
+    }
+}
@@ -1,6 +1,5 @@
 package com.dto;
 
-import com.entities.PaymentCard;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -39,5 +38,8 @@ public class UserDto implements Serializable {
 
     private Boolean active;
 
-    List<PaymentCard> paymentCards;
+    // версия сущности: сравнивается с version событий изменений
+    private Long version;
+
+    private List<PaymentCardDto> paymentCards;
 }
@@ -0,0 +1,7 @@
+package com.dto;
+
+import java.time.LocalDate;
+
+// строка экспорта: DTO-проекция прямо из JPQL, сущности в persistence context не попадают
+public record UserExportRow(Long id, String name, String surname, LocalDate birthDate, String email, Boolean active) {
+}
@@ -0,0 +1,36 @@
+package com.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class UserImportResultDto {
+
+    private long total;
+
+    private long imported;
+
+    private long failed;
+
+    // не больше лимита сервиса, остальное только в счётчике failed
+    private List<RowError> errors = new ArrayList<>();
+
+    private boolean errorsTruncated;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+
+        private long line;
+
+        private String email;
+
+        private String error;
+    }
+}
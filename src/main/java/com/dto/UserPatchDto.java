@@ -0,0 +1,37 @@
+package com.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// PATCH: null - поле не меняется (все колонки NOT NULL, обнулять нечего)
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPatchDto {
+
+    @Size(max = 50, message = "Name cannot be longer than 50 characters")
+    private String name;
+
+    @Size(max = 50, message = "Surname cannot be longer than 50 characters")
+    private String surname;
+
+    private LocalDate birthDate;
+
+    @Email(message = "Email should be valid")
+    @Size(max = 100, message = "Email cannot be longer than 100 characters")
+    private String email;
+
+    // версия, которую видел клиент; null - без проверки на параллельное изменение
+    private Long version;
+
+    public boolean hasChanges() {
+        return name != null || surname != null || birthDate != null || email != null;
+    }
+}
@@ -25,7 +25,8 @@ import java.time.LocalDateTime;
 @Builder(toBuilder = true)
 public class PaymentCard {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_cards_seq")
+    @SequenceGenerator(name = "payment_cards_seq", sequenceName = "payment_cards_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -44,6 +45,9 @@ public class PaymentCard {
     @Column(nullable = false)
     private Boolean active = true;
 
+    @Version
+    private Long version;
+
     @CreatedDate
     @Column(updatable = false)
     private LocalDateTime createdAt;
@@ -51,7 +55,7 @@ public class PaymentCard {
     @LastModifiedDate
     private LocalDateTime updatedAt;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonBackReference
     private User user;
@@ -23,7 +23,9 @@ import java.util.List;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled-lo: один nextval на 50 id, вставки идут JDBC-батчами
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Size(max = 50, message = "Name cannot be longer than 50 characters")
@@ -45,6 +47,10 @@ public class User {
     @Column(nullable = false)
     private Boolean active = true;
 
+    // оптимистическая блокировка; та же версия уходит в события изменений (ChangeEventPublisher)
+    @Version
+    private Long version;
+
     @CreatedDate
     @Column(updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,10 @@
+package com.enums;
+
+// тип события в потоке изменений (ChangeEventPublisher)
+public enum ChangeType {
+    CREATED,
+    UPDATED,
+    ACTIVATED,
+    DEACTIVATED,
+    DELETED
+}
@@ -2,5 +2,23 @@ package com.enums;
 
 public enum Role {
     ROLE_USER,
-    ROLE_ADMIN
+    ROLE_ADMIN,
+    SYSTEM;
+
+    private static final Role[] VALUES = values();
+
+    // бит роли в маске RoleSet
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    // null для неизвестных ролей, без исключения как у valueOf
+    public static Role fromName(String name) {
+        for (Role role : VALUES) {
+            if (role.name().equals(name)) {
+                return role;
+            }
+        }
+        return null;
+    }
 }
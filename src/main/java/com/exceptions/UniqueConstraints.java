@@ -0,0 +1,27 @@
+package com.exceptions;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+// "Уже существует" - только нарушение конкретного unique constraint; NOT NULL, длина и FK
+// тоже приходят как DataIntegrityViolationException, но это другие ошибки
+public final class UniqueConstraints {
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    public static final String USERS_EMAIL = "users_email_key";
+    public static final String PAYMENT_CARDS_NUMBER = "payment_cards_number_key";
+
+    private UniqueConstraints() {
+    }
+
+    public static boolean violated(DataIntegrityViolationException ex, String constraint) {
+        for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return UNIQUE_VIOLATION.equals(violation.getSQLState())
+                        && constraint.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+}
@@ -16,6 +16,7 @@ public interface PaymentCardMapper{
     PaymentCardDto toPaymentDto(PaymentCard entity);
 
     @Mapping(source = "userId", target = "user.id")
+    @Mapping(target = "version", ignore = true)
     PaymentCard toPaymentCardEntity(PaymentCardDto dto);
 
     List<PaymentCardDto> toDtoPaymentList(List<PaymentCard> entities);
@@ -3,6 +3,7 @@ package com.mappers;
 import com.dto.UserDto;
 import com.entities.User;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.ReportingPolicy;
 
 import java.util.List;
@@ -12,6 +13,13 @@ public interface UserMapper {
 
     UserDto toDto(User entity);
 
+    // для списков: карты подставляются одним запросом на страницу, коллекцию не трогаем
+    @Mapping(target = "paymentCards", ignore = true)
+    UserDto toSummaryDto(User entity);
+
+    // версию задаёт только Hibernate
+    @Mapping(target = "paymentCards", ignore = true)
+    @Mapping(target = "version", ignore = true)
     User toEntity(UserDto dto);
 
     List<UserDto> toDtoUserList(List<User> entities);
@@ -0,0 +1,56 @@
+package com.pagination;
+
+import com.exceptions.BadRequestException;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+// Непрозрачный курсор для keyset-пагинации: base64url от "key=value&key=value"
+public final class KeysetCursor {
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(KeysetScrollPosition position) {
+        StringJoiner joiner = new StringJoiner("&");
+        position.getKeys().forEach((key, value) -> joiner.add(
+                URLEncoder.encode(key, StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8)));
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // parsers: имя ключа сортировки -> разбор значения в тип атрибута сущности
+    public static KeysetScrollPosition decode(String cursor, Map<String, Function<String, ?>> parsers) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (String pair : raw.split("&")) {
+                int separator = pair.indexOf('=');
+                String key = URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8);
+                Function<String, ?> parser = parsers.get(key);
+                if (parser == null) {
+                    throw new BadRequestException("Invalid cursor");
+                }
+                keys.put(key, parser.apply(URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8)));
+            }
+            if (!keys.keySet().equals(parsers.keySet())) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return ScrollPosition.forward(keys);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
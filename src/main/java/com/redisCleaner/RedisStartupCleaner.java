@@ -1,27 +1,109 @@
 package com.redisCleaner;
 
+import com.cache.CacheGenerations;
+import com.config.AppCacheProperties;
 import lombok.RequiredArgsConstructor;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 
+// Раньше: KEYS * и DEL всего Redis, включая чужие ключи. Теперь при старте кэши переходят
+// на новое поколение (INCR), а ключи старых поколений удаляются в фоне:
+// SCAN по префиксу сервиса и UNLINK ограниченными пачками.
+@Slf4j
 @Component
-@ConditionalOnBean(StringRedisTemplate.class)
+@ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
 @RequiredArgsConstructor
 public class RedisStartupCleaner {
 
     private final StringRedisTemplate redisTemplate;
+    private final CacheGenerations generations;
+    private final CacheManager cacheManager;
+    private final AppCacheProperties properties;
 
     @EventListener(ApplicationReadyEvent.class)
     public void clearAppCacheOnStartup() {
-        Set<String> keys = redisTemplate.keys("*");
+        Set<String> cacheNames = new LinkedHashSet<>(properties.getSpecs().keySet());
+        cacheNames.addAll(cacheManager.getCacheNames());
 
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
+        if (properties.isClearOnStartup()) {
+            cacheNames.forEach(name -> Objects.requireNonNull(cacheManager.getCache(name)).clear());
+        }
+        Thread.ofVirtual().name("cache-sweep").start(() -> cacheNames.forEach(this::sweep));
+    }
+
+    public long sweep(String cacheName) {
+        long current = generations.current(cacheName);
+        String prefix = generations.cachePrefix(cacheName);
+        long removed = unlinkMatching(prefix + "*", key -> isOldGeneration(key, prefix, current));
+        // формат до поколений: <cacheName>::<key> - без префикса сервиса, поэтому только по явному флагу
+        if (properties.isSweepLegacyKeys()) {
+            removed += unlinkMatching(cacheName + "::*", key -> true);
+        }
+        if (removed > 0) {
+            log.info("Removed {} stale keys of cache {} (current generation {})", removed, cacheName, current);
+        }
+        return removed;
+    }
+
+    private long unlinkMatching(String pattern, Predicate<String> stale) {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(pattern)
+                .count(properties.getSweepBatchSize())
+                .build();
+        long removed = 0;
+        List<String> batch = new ArrayList<>(properties.getSweepBatchSize());
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (!stale.test(key)) {
+                    continue;
+                }
+                batch.add(key);
+                if (batch.size() == properties.getSweepBatchSize()) {
+                    removed += unlink(batch);
+                }
+            }
+            removed += unlink(batch);
+        } catch (RuntimeException ex) {
+            // не критично: ключи старых поколений с TTL истекут сами
+            log.warn("Cache sweep for pattern {} interrupted", pattern, ex);
+        }
+        return removed;
+    }
+
+    private long unlink(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long count = redisTemplate.unlink(keys);
+        keys.clear();
+        return count != null ? count : 0;
+    }
+
+    // <prefix><N>::<key>, N != текущему; счётчик поколения (<cache>:gen) под шаблон тоже попадает
+    private static boolean isOldGeneration(String key, String prefix, long current) {
+        int end = key.indexOf("::", prefix.length());
+        if (end <= prefix.length()) {
+            return false;
+        }
+        try {
+            return Long.parseLong(key.substring(prefix.length(), end)) != current;
+        } catch (NumberFormatException ex) {
+            return false;
         }
     }
 }
@@ -1,30 +1,69 @@
 package com.repositories;
 
+import com.dto.PaymentCardExportRow;
 import com.entities.PaymentCard;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentCardRep extends JpaRepository<PaymentCard, Long>, JpaSpecificationExecutor<PaymentCard> {
 
     List<PaymentCard> findByUserId(Long userId);
 
+    List<PaymentCard> findByUserIdIn(Collection<Long> userIds);
+
     boolean existsByNumber(String number);
 
     // Native query
     @Query(value = "SELECT * FROM payment_cards pc WHERE pc.user_id = :userId", nativeQuery = true)
     List<PaymentCard> findCardsByUserNative(@Param("userId") Long userId);
 
-    // JPQL update для статуса карты
+    // экспорт: серверный курсор (fetch size), проекция без сущностей, порядок по PK
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.dto.PaymentCardExportRow(p.id, p.user.id, p.number, p.holder, p.expirationDate, p.active) "
+            + "FROM PaymentCard p ORDER BY p.id")
+    Stream<PaymentCardExportRow> streamAllForExport();
+
+    // построение фильтра номеров (CardNumberFilter)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT p.number FROM PaymentCard p")
+    Stream<String> streamAllNumbers();
+
+    // JPQL update для статуса карты; bulk update сам @Version не увеличивает
     @Modifying
-    @Query("UPDATE PaymentCard p SET p.active = :status WHERE p.id = :id")
+    @Query("UPDATE PaymentCard p SET p.active = :status, p.version = p.version + 1 WHERE p.id = :id")
     void updateCardStatus(@Param("id") Long id, @Param("status") boolean status);
 
+    // PATCH: один UPDATE ... RETURNING; null - колонка сохраняет значение, ownerId null - без фильтра (админ).
+    // Пусто - карта не найдена, чужая, неактивна или версия устарела
+    @Query(value = "UPDATE payment_cards SET "
+            + "holder = COALESCE(CAST(:holder AS VARCHAR), holder), "
+            + "expiration_date = COALESCE(CAST(:expirationDate AS DATE), expiration_date), "
+            + "version = version + 1, updated_at = now() "
+            + "WHERE id = :id AND active "
+            + "AND (CAST(:ownerId AS BIGINT) IS NULL OR user_id = :ownerId) "
+            + "AND (CAST(:version AS BIGINT) IS NULL OR version = :version) "
+            + "RETURNING *", nativeQuery = true)
+    Optional<PaymentCard> patchCard(@Param("id") Long id,
+                                    @Param("ownerId") Long ownerId,
+                                    @Param("holder") String holder,
+                                    @Param("expirationDate") LocalDate expirationDate,
+                                    @Param("version") Long version);
 
 }
@@ -1,23 +1,82 @@
 package com.repositories;
 
+import com.dto.UserExportRow;
 import com.entities.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRep extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
 
     Optional<User> findByEmail(String email);
 
-    // JPQL модификация - изменение статуса (activate/deactivate)
+    // карты подгружаются тем же запросом, маппинг в DTO не требует открытой сессии
+    @EntityGraph(attributePaths = "paymentCards")
+    Optional<User> findWithCardsById(Long id);
+
+    // batch: один запрос WHERE id IN (...)
+    @EntityGraph(attributePaths = "paymentCards")
+    List<User> findWithCardsByIdIn(Collection<Long> ids);
+
+    // импорт: какие email из пачки уже заняты
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // экспорт: серверный курсор (fetch size), проекция без сущностей, порядок по PK
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.dto.UserExportRow(u.id, u.name, u.surname, u.birthDate, u.email, u.active) "
+            + "FROM User u ORDER BY u.id")
+    Stream<UserExportRow> streamAllForExport();
+
+    // лимит карт: один UPDATE резервирует слот, row lock на пользователе сериализует параллельные запросы.
+    // card_count не маппится в User (native), 0 строк - пользователь не найден, неактивен или лимит исчерпан
     @Modifying
-    @Query("UPDATE User u SET u.active = :status WHERE u.id = :id")
+    @Query(value = "UPDATE users SET card_count = card_count + 1 "
+            + "WHERE id = :id AND active AND card_count < :limit", nativeQuery = true)
+    int reserveCardSlot(@Param("id") Long id, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE users SET card_count = card_count - 1 WHERE id = :id AND card_count > 0",
+            nativeQuery = true)
+    void releaseCardSlot(@Param("id") Long id);
+
+    // JPQL модификация - изменение статуса (activate/deactivate); bulk update сам @Version не увеличивает
+    @Modifying
+    @Query("UPDATE User u SET u.active = :status, u.version = u.version + 1 WHERE u.id = :id")
     void updateUserStatus(@Param("id") Long id, @Param("status") boolean status);
 
+    // PATCH: один UPDATE ... RETURNING вместо SELECT + UPDATE всех колонок; null - колонка сохраняет значение.
+    // Версия проверяется в том же WHERE; пусто - пользователь не найден, неактивен или версия устарела
+    @Query(value = "UPDATE users SET "
+            + "name = COALESCE(CAST(:name AS VARCHAR), name), "
+            + "surname = COALESCE(CAST(:surname AS VARCHAR), surname), "
+            + "birth_date = COALESCE(CAST(:birthDate AS DATE), birth_date), "
+            + "email = COALESCE(CAST(:email AS VARCHAR), email), "
+            + "version = version + 1, updated_at = now() "
+            + "WHERE id = :id AND active AND (CAST(:version AS BIGINT) IS NULL OR version = :version) "
+            + "RETURNING *", nativeQuery = true)
+    Optional<User> patchUser(@Param("id") Long id,
+                             @Param("name") String name,
+                             @Param("surname") String surname,
+                             @Param("birthDate") LocalDate birthDate,
+                             @Param("email") String email,
+                             @Param("version") Long version);
+
 }
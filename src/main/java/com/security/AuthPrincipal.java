@@ -0,0 +1,10 @@
+package com.security;
+
+import com.accessChecker.RoleSet;
+
+// Вызывающий: id пользователя (может отсутствовать у сервисных вызовов) и роли в виде маски
+public record AuthPrincipal(Long userId, RoleSet roles, boolean serviceCall) {
+
+    // атрибут запроса с вызывающим - для кода без доступа к параметрам контроллера (ReadYourWrites)
+    public static final String REQUEST_ATTRIBUTE = AuthPrincipal.class.getName();
+}
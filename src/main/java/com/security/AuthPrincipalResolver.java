@@ -0,0 +1,79 @@
+package com.security;
+
+import com.accessChecker.RoleSet;
+import com.accessChecker.RolesHeader;
+import com.config.SecurityProperties;
+import com.exceptions.BadRequestException;
+import com.exceptions.UnauthorizedException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+// Подставляет AuthPrincipal в параметры контроллеров:
+// Bearer-токен -> JwtPrincipalVerifier (если задан секрет), иначе (если разрешено) заголовки от gateway
+@Component
+@RequiredArgsConstructor
+public class AuthPrincipalResolver implements HandlerMethodArgumentResolver {
+
+    private static final String BEARER = "Bearer ";
+
+    private final JwtPrincipalVerifier verifier;
+    private final SecurityProperties properties;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == AuthPrincipal.class;
+    }
+
+    @Override
+    public AuthPrincipal resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                         NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        AuthPrincipal principal = resolve(webRequest);
+        webRequest.setAttribute(AuthPrincipal.REQUEST_ATTRIBUTE, principal, RequestAttributes.SCOPE_REQUEST);
+        return principal;
+    }
+
+    private AuthPrincipal resolve(NativeWebRequest webRequest) {
+        String authorization = webRequest.getHeader(HttpHeaders.AUTHORIZATION);
+        // без секрета токен не проверить: gateway, пробрасывающий его, продолжает работать через X-User-*
+        if (verifier.isEnabled() && authorization != null
+                && authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return verifier.verify(authorization.substring(BEARER.length()).trim());
+        }
+        if (properties.isTrustGatewayHeaders()) {
+            AuthPrincipal fromHeaders = fromGatewayHeaders(webRequest);
+            if (fromHeaders != null) {
+                return fromHeaders;
+            }
+        }
+        throw new UnauthorizedException("Authentication required");
+    }
+
+    private static AuthPrincipal fromGatewayHeaders(NativeWebRequest webRequest) {
+        String userId = webRequest.getHeader("X-User-Id");
+        String roles = webRequest.getHeader("X-User-Roles");
+        String serviceCall = webRequest.getHeader("X-Service-Call");
+        if (userId == null && roles == null && serviceCall == null) {
+            return null;
+        }
+        RoleSet roleSet = RolesHeader.parse(roles);
+        return new AuthPrincipal(parseUserId(userId), roleSet, Boolean.parseBoolean(serviceCall));
+    }
+
+    private static Long parseUserId(String userId) {
+        if (userId == null || userId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(userId.trim());
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("Invalid X-User-Id header");
+        }
+    }
+}
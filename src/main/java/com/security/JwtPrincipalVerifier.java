@@ -0,0 +1,147 @@
+package com.security;
+
+import com.accessChecker.RoleSet;
+import com.accessChecker.RolesHeader;
+import com.config.SecurityProperties;
+import com.enums.Role;
+import com.exceptions.UnauthorizedException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Проверка подписи Bearer-токена один раз: результат кешируется по SHA-256 токена
+// до его exp (но не дольше verifiedTtl). Сам токен в памяти не хранится.
+// Невалидные токены и токены без exp не кешируются - каждый такой запрос проверяется заново.
+@Component
+public class JwtPrincipalVerifier {
+
+    private final JwtParser parser;
+    private final String rolesClaim;
+    private final long verifiedTtlNanos;
+    private final Cache<String, Verified> verified;
+
+    public JwtPrincipalVerifier(SecurityProperties properties) {
+        String secret = properties.getJwtSecret();
+        this.parser = secret == null || secret.isBlank() ? null : Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .setAllowedClockSkewSeconds(properties.getClockSkew().toSeconds())
+                .build();
+        this.rolesClaim = properties.getRolesClaim();
+        this.verifiedTtlNanos = properties.getVerifiedTtl().toNanos();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(properties.getVerifiedCacheSize())
+                .expireAfter(new UntilTokenExpiry())
+                .build();
+    }
+
+    // секрет не задан - Bearer-токены не проверяются, вызывающий решает по заголовкам gateway
+    public boolean isEnabled() {
+        return parser != null;
+    }
+
+    public AuthPrincipal verify(String token) {
+        if (parser == null) {
+            throw new UnauthorizedException("Bearer tokens are not accepted");
+        }
+        String key = sha256(token);
+        Verified cached = verified.getIfPresent(key);
+        if (cached != null) {
+            return cached.principal();
+        }
+        Verified parsed = parse(token);
+        verified.put(key, parsed);
+        return parsed.principal();
+    }
+
+    private Verified parse(String token) {
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException ex) {
+            throw new UnauthorizedException("Invalid token");
+        }
+        RoleSet roles = roles(claims.get(rolesClaim));
+        AuthPrincipal principal = new AuthPrincipal(userId(claims.getSubject()), roles, roles.has(Role.SYSTEM));
+        // бессрочный токен нельзя отозвать истечением срока - не принимаем
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            throw new UnauthorizedException("Token without expiration");
+        }
+        return new Verified(principal, expiration.getTime());
+    }
+
+    // roles: ["ROLE_USER", ...] или строка "ROLE_USER,ROLE_ADMIN"
+    private static RoleSet roles(Object claim) {
+        if (claim instanceof Collection<?> names) {
+            int mask = 0;
+            for (Object name : names) {
+                Role role = Role.fromName(String.valueOf(name));
+                if (role != null) {
+                    mask |= role.bit();
+                }
+            }
+            return RoleSet.of(mask);
+        }
+        if (claim instanceof String names) {
+            return RolesHeader.parse(names);
+        }
+        return RoleSet.EMPTY;
+    }
+
+    // sub сервисного токена может быть не числом - тогда вызов без userId
+    private static Long userId(String subject) {
+        if (subject == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(subject);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private record Verified(AuthPrincipal principal, long expiresAtMillis) {
+    }
+
+    private final class UntilTokenExpiry implements Expiry<String, Verified> {
+
+        @Override
+        public long expireAfterCreate(String key, Verified value, long currentTime) {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(value.expiresAtMillis() - System.currentTimeMillis());
+            return Math.max(0, Math.min(remaining, verifiedTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Verified value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Verified value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.services;
+
+import com.accessChecker.AccessChecker;
+import com.cache.TwoLevelCache;
+import com.dto.CacheStatsDto;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+
+// Диагностика кэшей для настройки TTL и размеров: только для администратора
+@Service
+public class CacheAdminService {
+
+    public static final int MAX_HOT_KEYS = 100;
+
+    // SCAN по Redis ограничен: на большом кэше число ключей - нижняя граница
+    private static final int MAX_SCANNED_KEYS = 100_000;
+    private static final int MEMORY_SAMPLES = 50;
+
+    private final CacheManager cacheManager;
+    private final AccessChecker accessChecker;
+
+    @Autowired
+    public CacheAdminService(CacheManager cacheManager, AccessChecker accessChecker) {
+        this.cacheManager = cacheManager;
+        this.accessChecker = accessChecker;
+    }
+
+    public List<CacheStatsDto> getAllStats(Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        return cacheManager.getCacheNames().stream()
+                .sorted()
+                .map(name -> stats(getCache(name), 0))
+                .toList();
+    }
+
+    public CacheStatsDto getStats(String cacheName, int hotKeys, Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        return stats(getCache(cacheName), Math.min(Math.max(hotKeys, 0), MAX_HOT_KEYS));
+    }
+
+    public Object getValue(String cacheName, String key, Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        Cache.ValueWrapper wrapper = getCache(cacheName).get(key);
+        if (wrapper == null) {
+            throw new EntityNotFoundException("Key not found in cache " + cacheName + ": " + key);
+        }
+        return wrapper.get();
+    }
+
+    public void clear(String cacheName, Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        getCache(cacheName).clear();
+    }
+
+    private CacheStatsDto stats(Cache cache, int hotKeys) {
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            return twoLevelCache.stats(hotKeys, MAX_SCANNED_KEYS, MEMORY_SAMPLES);
+        }
+        return CacheStatsDto.builder()
+                .name(cache.getName())
+                .localHotKeys(List.of())
+                .build();
+    }
+
+    // только уже созданные кэши: getCache(name) у менеджеров создаёт новый кэш на любое имя
+    private Cache getCache(String cacheName) {
+        Cache cache = cacheManager.getCacheNames().contains(cacheName) ? cacheManager.getCache(cacheName) : null;
+        if (cache == null) {
+            throw new EntityNotFoundException("Cache not found: " + cacheName);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,170 @@
+package com.services;
+
+import com.accessChecker.AccessChecker;
+import com.dto.PaymentCardExportRow;
+import com.dto.UserExportRow;
+import com.enums.DataFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.repositories.PaymentCardRep;
+import com.repositories.UserRep;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Потоковая выгрузка всех пользователей/карт: строки идут из серверного курсора
+// (fetch size в запросах репозиториев) сразу в ответ, без пагинации и COUNT.
+// Проекции не являются сущностями, поэтому persistence context не растёт - heap постоянный.
+@Slf4j
+@Service
+public class DataExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UserRep userRepository;
+    private final PaymentCardRep paymentCardRep;
+    private final AccessChecker accessChecker;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public DataExportService(UserRep userRepository,
+                             PaymentCardRep paymentCardRep,
+                             AccessChecker accessChecker,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.paymentCardRep = paymentCardRep;
+        this.accessChecker = accessChecker;
+        // курсор PostgreSQL работает только внутри транзакции (autocommit=false)
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    // доступ проверяется до начала ответа, чтобы отказ пришёл обычным 403
+    public StreamingResponseBody exportUsers(DataFormat format, Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        return out -> export(out, format, userRepository::streamAllForExport, UserExportRow.class,
+                "id,name,surname,birthDate,email,active", (row, w) -> {
+                    csv(w, row.id());
+                    csv(w, row.name());
+                    csv(w, row.surname());
+                    csv(w, row.birthDate());
+                    csv(w, row.email());
+                    csvLast(w, row.active());
+                });
+    }
+
+    public StreamingResponseBody exportCards(DataFormat format, Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        return out -> export(out, format, paymentCardRep::streamAllForExport, PaymentCardExportRow.class,
+                "id,userId,number,holder,expirationDate,active", (row, w) -> {
+                    csv(w, row.id());
+                    csv(w, row.userId());
+                    csv(w, row.number());
+                    csv(w, row.holder());
+                    csv(w, row.expirationDate());
+                    csvLast(w, row.active());
+                });
+    }
+
+    private <T> void export(OutputStream out, DataFormat format, Supplier<Stream<T>> query, Class<T> type,
+                            String csvHeader, CsvRow<T> csvRow) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long[] count = {0};
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<T> rows = query.get()) {
+                    if (format == DataFormat.CSV) {
+                        writer.write(csvHeader);
+                        writer.write('\n');
+                        for (T row : (Iterable<T>) rows::iterator) {
+                            csvRow.write(row, writer);
+                            count[0]++;
+                        }
+                    } else {
+                        writeNdjson(writer, rows, type, count);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            // клиент оборвал соединение - дальше читать курсор незачем
+            log.info("Export of {} aborted after {} rows: {}", type.getSimpleName(), count[0], ex.getMessage());
+            throw ex.getCause();
+        }
+        writer.flush();
+        log.info("Exported {} {} rows as {}", count[0], type.getSimpleName(), format);
+    }
+
+    // один генератор на весь ответ, без flush после каждой строки
+    private <T> void writeNdjson(Writer writer, Stream<T> rows, Class<T> type, long[] count) throws IOException {
+        ObjectWriter rowWriter = objectMapper.writerFor(type)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        for (T row : (Iterable<T>) rows::iterator) {
+            rowWriter.writeValue(generator, row);
+            count[0]++;
+        }
+        if (count[0] > 0) {
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    private static void csv(Writer writer, Object value) throws IOException {
+        csvValue(writer, value);
+        writer.write(',');
+    }
+
+    private static void csvLast(Writer writer, Object value) throws IOException {
+        csvValue(writer, value);
+        writer.write('\n');
+    }
+
+    // RFC 4180: кавычки только там, где они нужны
+    private static void csvValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    @FunctionalInterface
+    private interface CsvRow<T> {
+        void write(T row, Writer writer) throws IOException;
+    }
+}
@@ -1,73 +1,113 @@
 package com.services;
 
 import com.accessChecker.AccessChecker;
+import com.cache.CacheLoads;
+import com.cache.CacheWatches;
+import com.cardNumberFilter.CardNumberFilter;
+import com.changeEvents.ChangeEventPublisher;
+import com.dto.CursorPageDto;
 import com.dto.PaymentCardDto;
+import com.dto.PaymentCardPatchDto;
+import com.dto.UserDto;
 import com.entities.PaymentCard;
 import com.entities.User;
+import com.enums.ChangeType;
 import com.exceptions.BadRequestException;
+import com.exceptions.UniqueConstraints;
 import com.mappers.PaymentCardMapper;
+import com.pagination.KeysetCursor;
 import com.repositories.PaymentCardRep;
 import com.repositories.UserRep;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 @Service
 public class PaymentCardService {
 
+    public static final int MAX_SCROLL_SIZE = 100;
+    public static final int MAX_CARDS_PER_USER = 5;
+
+    // keyset по первичному ключу
+    private static final Sort CARD_SCROLL_SORT = Sort.by("id");
+    private static final Map<String, Function<String, ?>> CARD_CURSOR_KEYS = Map.of("id", Long::valueOf);
+
     private final PaymentCardMapper paymentCardMapper;
     private final PaymentCardRep paymentCardRep;
     private final UserRep userRepository;
     private final CacheManager cacheManager;
     private final AccessChecker accessChecker;
+    private final CardNumberFilter cardNumberFilter;
+    private final ChangeEventPublisher changeEvents;
 
     @Autowired
     public PaymentCardService(PaymentCardMapper paymentCardMapper, PaymentCardRep paymentCardRep,
                               UserRep userRepository, CacheManager cacheManager,
-                              AccessChecker accessChecker) {
+                              AccessChecker accessChecker, CardNumberFilter cardNumberFilter,
+                              ChangeEventPublisher changeEvents) {
         this.paymentCardMapper = paymentCardMapper;
         this.paymentCardRep = paymentCardRep;
         this.userRepository = userRepository;
         this.cacheManager = cacheManager;
         this.accessChecker = accessChecker;
+        this.cardNumberFilter = cardNumberFilter;
+        this.changeEvents = changeEvents;
     }
 
     @Transactional
-    @CacheEvict(value = "userCards", key = "#userId")
+    @CacheEvict(value = {"userCards", "users"}, key = "#userId")
     public PaymentCardDto createCard(Long userId, PaymentCardDto dto, Long requesterId, Set<String> roles) {
         accessChecker.checkUserAccess(userId, requesterId, roles);
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        if (!user.getActive()) throw new BadRequestException("Cannot create card for inactive user");
-
-        if (user.getPaymentCards() != null && user.getPaymentCards().size() >= 5)
-            throw new IllegalStateException("User cannot have more than 5 cards");
-
         if (dto.getExpirationDate().isBefore(LocalDate.now()))
             throw new IllegalArgumentException("Expiration date must be in the future");
 
-        if (paymentCardRep.existsByNumber(dto.getNumber()))
-            throw new IllegalArgumentException("Card number already exists");
+        // слот резервируется атомарно; при откате транзакции (дубликат номера) счётчик откатится вместе с ней
+        if (userRepository.reserveCardSlot(userId, MAX_CARDS_PER_USER) == 0)
+            throw rejectedCardSlot(userId);
+
+        // "точно нет" от фильтра - existsByNumber не нужен, дубликат всё равно поймает unique constraint
+        if (cardNumberFilter.mightContain(dto.getNumber())) {
+            if (paymentCardRep.existsByNumber(dto.getNumber()))
+                throw new IllegalArgumentException("Card number already exists");
+            cardNumberFilter.recordFalsePositive();
+        }
 
         PaymentCard card = paymentCardMapper.toPaymentCardEntity(dto);
-        card.setUser(user);
+        card.setUser(userRepository.getReferenceById(userId));
         card.setActive(true);
 
-        return paymentCardMapper.toPaymentDto(paymentCardRep.save(card));
+        PaymentCard saved;
+        try {
+            saved = paymentCardRep.saveAndFlush(card);
+        } catch (DataIntegrityViolationException ex) {
+            if (!UniqueConstraints.violated(ex, UniqueConstraints.PAYMENT_CARDS_NUMBER)) throw ex;
+            throw new IllegalArgumentException("Card number already exists");
+        }
+        cardNumberFilter.add(saved.getNumber());
+        changeEvents.cardChanged(saved, ChangeType.CREATED);
+        return paymentCardMapper.toPaymentDto(saved);
     }
 
     @Transactional(readOnly = true)
@@ -76,6 +116,31 @@ public class PaymentCardService {
         return paymentCardRep.findAll(pageable).map(paymentCardMapper::toPaymentDto);
     }
 
+    // SCROLL: seek по id вместо OFFSET и без COUNT(*); при одном ключе Spring Data строит просто id > ?,
+    // это диапазон по первичному ключу - дополнительная граница, как у пользователей, не нужна
+    @Transactional(readOnly = true)
+    public CursorPageDto<PaymentCardDto> scrollCards(String after, int size, Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new BadRequestException("Size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+
+        KeysetScrollPosition position = KeysetCursor.decode(after, CARD_CURSOR_KEYS);
+        Specification<PaymentCard> all = (root, query, cb) -> cb.conjunction();
+
+        Window<PaymentCard> window = paymentCardRep.findBy(all, query -> query
+                .sortBy(CARD_SCROLL_SORT)
+                .limit(size)
+                .scroll(position));
+
+        String nextCursor = window.hasNext()
+                ? KeysetCursor.encode((KeysetScrollPosition) window.positionAt(window.size() - 1))
+                : null;
+        List<PaymentCardDto> content = window.getContent().stream()
+                .map(paymentCardMapper::toPaymentDto)
+                .toList();
+        return new CursorPageDto<>(content, nextCursor, content.size());
+    }
 
     @Transactional(readOnly = true)
     public PaymentCardDto getCardById(Long id, Long requesterId, Set<String> roles) {
@@ -85,13 +150,20 @@ public class PaymentCardService {
         return paymentCardMapper.toPaymentDto(card);
     }
 
-    @Cacheable(value = "userCards", key = "#userId")
-    @Transactional(readOnly = true)
+    // read-through: доступ проверяется до кэша (с @Cacheable попадание его обходило),
+    // параллельные промахи по одному userId схлопываются в одну загрузку
     public List<PaymentCardDto> getCardsByUserId(Long userId, Long requesterId, Set<String> roles) {
         accessChecker.checkUserAccess(userId, requesterId, roles);
-        if (!userRepository.existsById(userId))
+        Cache userCardsCache = Objects.requireNonNull(cacheManager.getCache("userCards"));
+        return CacheLoads.get(userCardsCache, userId, () -> loadCardsByUserId(userId));
+    }
+
+    private List<PaymentCardDto> loadCardsByUserId(Long userId) {
+        List<PaymentCard> cards = paymentCardRep.findByUserId(userId);
+        // существование пользователя проверяем только для пустого списка
+        if (cards.isEmpty() && !userRepository.existsById(userId))
             throw new IllegalArgumentException("User not found with id: " + userId);
-        return paymentCardMapper.toDtoPaymentList(paymentCardRep.findByUserId(userId));
+        return paymentCardMapper.toDtoPaymentList(cards);
     }
 
     @Caching(
@@ -110,16 +182,43 @@ public class PaymentCardService {
         if (dto.getExpirationDate().isBefore(LocalDate.now()))
             throw new IllegalArgumentException("Expiration date must be in the future");
 
+        String oldNumber = card.getNumber();
         card.setNumber(dto.getNumber());
         card.setHolder(dto.getHolder());
         card.setExpirationDate(dto.getExpirationDate());
         card.setActive(dto.getActive());
 
-        PaymentCard updated = paymentCardRep.save(card);
-        Objects.requireNonNull(cacheManager.getCache("userCards")).evict(updated.getUser().getId());
+        // flush до маппинга: в DTO (и в кэш) попадает уже увеличенная версия
+        PaymentCard updated = paymentCardRep.saveAndFlush(card);
+        if (!Objects.equals(oldNumber, updated.getNumber())) {
+            cardNumberFilter.add(updated.getNumber());
+            cardNumberFilter.remove(oldNumber);
+        }
+        evictOwnerCaches(updated.getUser().getId());
+        changeEvents.cardChanged(updated, ChangeType.UPDATED);
         return paymentCardMapper.toPaymentDto(updated);
     }
 
+    // PATCH: без предварительного SELECT - владелец, активность и версия проверяются в WHERE
+    // одного UPDATE ... RETURNING; кэши карты и владельца обновляются на месте, а не сбрасываются
+    @Transactional
+    public PaymentCardDto patchCard(Long id, PaymentCardPatchDto patch, Long requesterId, Set<String> roles) {
+        if (!patch.hasChanges())
+            throw new BadRequestException("Nothing to update");
+        if (patch.getExpirationDate() != null && patch.getExpirationDate().isBefore(LocalDate.now()))
+            throw new IllegalArgumentException("Expiration date must be in the future");
+
+        PaymentCard patched = paymentCardRep.patchCard(id, accessChecker.ownerFilter(requesterId, roles),
+                        patch.getHolder(), patch.getExpirationDate(), patch.getVersion())
+                .orElseThrow(() -> rejectedPatch(id, requesterId, roles));
+
+        PaymentCardDto dto = paymentCardMapper.toPaymentDto(patched);
+        Objects.requireNonNull(cacheManager.getCache("cards")).put(id, dto);
+        refreshOwnerCaches(dto);
+        changeEvents.cardChanged(patched, ChangeType.UPDATED);
+        return dto;
+    }
+
     @CacheEvict(value = "cards", key = "#id")
     @Transactional
     public void activateCard(Long id, Set<String> roles) {
@@ -129,6 +228,8 @@ public class PaymentCardService {
         if (card.getActive()) throw new IllegalStateException("Card already active");
         card.setActive(true);
         paymentCardRep.save(card);
+        evictOwnerCaches(card.getUser().getId());
+        changeEvents.cardChanged(card, ChangeType.ACTIVATED);
     }
 
     @CacheEvict(value = "cards", key = "#id")
@@ -140,6 +241,8 @@ public class PaymentCardService {
         if (!card.getActive()) throw new IllegalStateException("Card already inactive");
         card.setActive(false);
         paymentCardRep.save(card);
+        evictOwnerCaches(card.getUser().getId());
+        changeEvents.cardChanged(card, ChangeType.DEACTIVATED);
     }
 
     @Caching(evict = {@CacheEvict(value = "cards", key = "#id")})
@@ -150,7 +253,10 @@ public class PaymentCardService {
                 .orElseThrow(() -> new EntityNotFoundException("Card not found"));
         card.setActive(false);
         paymentCardRep.delete(card);
-        Objects.requireNonNull(cacheManager.getCache("userCards")).evict(card.getUser().getId());
+        userRepository.releaseCardSlot(card.getUser().getId());
+        cardNumberFilter.remove(card.getNumber());
+        evictOwnerCaches(card.getUser().getId());
+        changeEvents.cardChanged(card, ChangeType.DELETED);
     }
 
     public void clearAllCache() {
@@ -158,4 +264,56 @@ public class PaymentCardService {
         Objects.requireNonNull(cacheManager.getCache("userCards")).clear();
     }
 
+    // причину отказа выясняем только на редком пути, где UPDATE не затронул строку
+    private RuntimeException rejectedCardSlot(Long userId) {
+        User user = userRepository.findById(userId).orElse(null);
+        if (user == null) return new IllegalArgumentException("User not found");
+        if (!user.getActive()) return new BadRequestException("Cannot create card for inactive user");
+        return new IllegalStateException("User cannot have more than " + MAX_CARDS_PER_USER + " cards");
+    }
+
+    private RuntimeException rejectedPatch(Long id, Long requesterId, Set<String> roles) {
+        PaymentCard card = paymentCardRep.findById(id).orElse(null);
+        if (card == null) return new IllegalArgumentException("Card not found");
+        accessChecker.checkUserAccess(card.getUser().getId(), requesterId, roles);
+        if (!card.getActive()) return new IllegalStateException("Cannot update inactive card");
+        return new ObjectOptimisticLockingFailureException(PaymentCard.class, id);
+    }
+
+    // закэшированные записи не изменяются (их держит L1), кладутся копии с заменённой картой.
+    // Если запись инвалидируют до коммита (карту владельца добавили или удалили), put станет evict;
+    // без записи - evict, чтобы загрузка, начатая до коммита, не закэшировала старую карту
+    private void refreshOwnerCaches(PaymentCardDto card) {
+        Cache userCardsCache = Objects.requireNonNull(cacheManager.getCache("userCards"));
+        Cache usersCache = Objects.requireNonNull(cacheManager.getCache("users"));
+        Long userId = card.getUserId();
+
+        @SuppressWarnings("unchecked")
+        List<PaymentCardDto> cards = CacheWatches.getForUpdate(userCardsCache, userId, List.class);
+        if (cards != null) {
+            userCardsCache.put(userId, withCard(cards, card));
+        } else {
+            userCardsCache.evict(userId);
+        }
+        UserDto owner = CacheWatches.getForUpdate(usersCache, userId, UserDto.class);
+        if (owner != null && owner.getPaymentCards() != null) {
+            usersCache.put(userId, owner.toBuilder().paymentCards(withCard(owner.getPaymentCards(), card)).build());
+        } else {
+            usersCache.evict(userId);
+        }
+    }
+
+    private static List<PaymentCardDto> withCard(List<PaymentCardDto> cards, PaymentCardDto card) {
+        return cards.stream()
+                .map(cached -> cached.getId().equals(card.getId()) ? card : cached)
+                .toList();
+    }
+
+    // карты входят и в список userCards, и в UserDto владельца;
+    // внутри транзакции TwoLevelCache отправит оба DEL после коммита, вместе с @CacheEvict/@CachePut метода
+    private void evictOwnerCaches(Long userId) {
+        Objects.requireNonNull(cacheManager.getCache("userCards")).evict(userId);
+        Objects.requireNonNull(cacheManager.getCache("users")).evict(userId);
+    }
+
 }
@@ -0,0 +1,352 @@
+package com.services;
+
+import com.accessChecker.AccessChecker;
+import com.dto.UserDto;
+import com.dto.UserImportResultDto;
+import com.enums.DataFormat;
+import com.exceptions.BadRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.repositories.UserRep;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Массовый импорт пользователей из NDJSON/CSV потоком: файл не читается в память целиком,
+// строки валидируются по одной, email проверяются и вставляются пачками по CHUNK_SIZE,
+// каждая пачка - своя транзакция. Память ограничена пачкой и списком ошибок (MAX_REPORTED_ERRORS).
+@Slf4j
+@Service
+public class UserImportService {
+
+    static final int CHUNK_SIZE = 1_000;
+    static final int MAX_REPORTED_ERRORS = 1_000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO users (id, name, surname, birth_date, email, active, created_at, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (email) DO NOTHING";
+
+    // шаг users_seq = allocationSize у User
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final String ALLOCATE_IDS_SQL = "SELECT nextval('users_seq') FROM generate_series(1, ?)";
+
+    private final UserRep userRepository;
+    private final AccessChecker accessChecker;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader userReader;
+    private final Validator validator;
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public UserImportService(UserRep userRepository,
+                             AccessChecker accessChecker,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             CacheManager cacheManager) {
+        this.userRepository = userRepository;
+        this.accessChecker = accessChecker;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userReader = objectMapper.readerFor(UserDto.class);
+        this.validator = validator;
+        this.cacheManager = cacheManager;
+    }
+
+    public UserImportResultDto importUsers(InputStream body, DataFormat format, Set<String> roles, boolean isServiceCall) {
+        accessChecker.checkAdminAccess(roles, isServiceCall);
+
+        UserImportResultDto result = new UserImportResultDto();
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        CsvHeader csvHeader = null;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == DataFormat.CSV && csvHeader == null) {
+                    csvHeader = CsvHeader.parse(line);
+                    continue;
+                }
+                result.setTotal(result.getTotal() + 1);
+
+                UserDto dto;
+                try {
+                    dto = format == DataFormat.CSV ? csvHeader.toDto(line) : userReader.readValue(line);
+                } catch (JsonProcessingException | IllegalArgumentException | DateTimeParseException ex) {
+                    fail(result, lineNumber, null, "Malformed row");
+                    continue;
+                }
+                // строка NDJSON "null" читается без ошибки, но объекта в ней нет
+                if (dto == null) {
+                    fail(result, lineNumber, null, "Malformed row");
+                    continue;
+                }
+                String error = validate(dto);
+                if (error != null) {
+                    fail(result, lineNumber, dto.getEmail(), error);
+                    continue;
+                }
+
+                chunk.add(new Row(lineNumber, dto));
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, result);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (!chunk.isEmpty()) {
+            flush(chunk, result);
+        }
+
+        // новые id могли попасть в отрицательный кэш до импорта
+        if (result.getImported() > 0) {
+            Cache missingUsers = cacheManager.getCache("missingUsers");
+            if (missingUsers != null) {
+                missingUsers.clear();
+            }
+        }
+        log.info("User import finished: total={}, imported={}, failed={}",
+                result.getTotal(), result.getImported(), result.getFailed());
+        return result;
+    }
+
+    // одна пачка: дубли внутри пачки, один запрос IN по email, batch insert - в одной транзакции
+    private void flush(List<Row> chunk, UserImportResultDto result) {
+        Map<String, Row> byEmail = new LinkedHashMap<>();
+        List<Row> duplicates = new ArrayList<>();
+        for (Row row : chunk) {
+            if (byEmail.putIfAbsent(row.dto().getEmail(), row) != null) {
+                duplicates.add(row);
+            }
+        }
+
+        List<Row> existing = new ArrayList<>();
+        List<Row> conflicted = new ArrayList<>();
+        long inserted;
+        try {
+            inserted = transactionTemplate.execute(status -> {
+                Set<String> taken = new HashSet<>(userRepository.findExistingEmails(byEmail.keySet()));
+                List<Row> toInsert = new ArrayList<>(byEmail.size());
+                for (Row row : byEmail.values()) {
+                    (taken.contains(row.dto().getEmail()) ? existing : toInsert).add(row);
+                }
+                return insert(toInsert, conflicted);
+            });
+        } catch (DataAccessException ex) {
+            log.warn("User import chunk at line {} rejected", chunk.getFirst().line(), ex);
+            for (Row row : chunk) {
+                fail(result, row.line(), row.dto().getEmail(), "Chunk rejected by database");
+            }
+            return;
+        }
+
+        result.setImported(result.getImported() + inserted);
+        for (Row row : duplicates) {
+            fail(result, row.line(), row.dto().getEmail(), "Duplicate email in file");
+        }
+        for (Row row : existing) {
+            fail(result, row.line(), row.dto().getEmail(), "User with this email already exists");
+        }
+        for (Row row : conflicted) {
+            fail(result, row.line(), row.dto().getEmail(), "User with this email already exists");
+        }
+    }
+
+    // ON CONFLICT DO NOTHING закрывает гонку с параллельным createUser: такая строка не вставится.
+    // id выдаются блоками из users_seq по той же схеме pooled-lo, что и у Hibernate
+    private long insert(List<Row> rows, List<Row> conflicted) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        long[] ids = allocateIds(rows.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                UserDto dto = rows.get(i).dto();
+                ps.setLong(1, ids[i]);
+                ps.setString(2, dto.getName());
+                ps.setString(3, dto.getSurname());
+                ps.setDate(4, Date.valueOf(dto.getBirthDate()));
+                ps.setString(5, dto.getEmail());
+                ps.setBoolean(6, true);
+                ps.setTimestamp(7, now);
+                ps.setTimestamp(8, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+
+        // reWriteBatchedInserts склеивает батч в multi-row INSERT и возвращает SUCCESS_NO_INFO -
+        // тогда вставленные строки определяем по выданным id
+        Set<Long> insertedIds = null;
+        for (int count : counts) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                insertedIds = new HashSet<>(jdbcTemplate.queryForList(
+                        "SELECT id FROM users WHERE id = ANY(?)", Long.class, (Object) ids));
+                break;
+            }
+        }
+
+        long inserted = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            boolean done = insertedIds != null ? insertedIds.contains(ids[i]) : counts[i] > 0;
+            if (done) {
+                inserted++;
+            } else {
+                conflicted.add(rows.get(i));
+            }
+        }
+        return inserted;
+    }
+
+    private long[] allocateIds(int count) {
+        List<Long> blocks = jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Long.class,
+                (count + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = blocks.get(i / ID_BLOCK_SIZE) + i % ID_BLOCK_SIZE;
+        }
+        return ids;
+    }
+
+    private String validate(UserDto dto) {
+        Set<ConstraintViolation<UserDto>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (dto.getBirthDate().isAfter(LocalDate.now())) {
+            return "Birth date cannot be in the future";
+        }
+        return null;
+    }
+
+    private static void fail(UserImportResultDto result, long line, String email, String error) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new UserImportResultDto.RowError(line, email, error));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private record Row(long line, UserDto dto) {
+    }
+
+    // CSV с заголовком: name,surname,email,birthDate (порядок колонок любой, birthDate в ISO-формате)
+    private record CsvHeader(int name, int surname, int email, int birthDate) {
+
+        static CsvHeader parse(String line) {
+            List<String> columns = splitCsv(line);
+            Map<String, Integer> positions = new LinkedHashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                positions.put(columns.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+            }
+            Integer name = positions.get("name");
+            Integer surname = positions.get("surname");
+            Integer email = positions.get("email");
+            Integer birthDate = positions.get("birthdate");
+            if (name == null || surname == null || email == null || birthDate == null) {
+                throw new BadRequestException("CSV header must contain name, surname, email, birthDate");
+            }
+            return new CsvHeader(name, surname, email, birthDate);
+        }
+
+        UserDto toDto(String line) {
+            List<String> values = splitCsv(line);
+            return UserDto.builder()
+                    .name(value(values, name))
+                    .surname(value(values, surname))
+                    .email(value(values, email))
+                    .birthDate(LocalDate.parse(value(values, birthDate)))
+                    .build();
+        }
+
+        private static String value(List<String> values, int index) {
+            if (index >= values.size()) {
+                throw new IllegalArgumentException("Missing column " + index);
+            }
+            return values.get(index).trim();
+        }
+    }
+
+    // RFC 4180 без переносов строк внутри полей: запятая-разделитель, "" - экранированная кавычка
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        values.add(current.toString());
+        return values;
+    }
+}
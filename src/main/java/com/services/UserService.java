@@ -1,49 +1,99 @@
 package com.services;
 
 import com.accessChecker.AccessChecker;
+import com.cache.CacheBatches;
+import com.cache.CacheLoads;
+import com.cache.CacheWatches;
+import com.changeEvents.ChangeEventPublisher;
+import com.datasource.PrimaryReads;
+import com.dto.CursorPageDto;
+import com.dto.PaymentCardDto;
 import com.dto.UserDto;
+import com.dto.UserPatchDto;
 import com.entities.User;
+import com.enums.ChangeType;
+import com.exceptions.BadRequestException;
+import com.exceptions.UniqueConstraints;
+import com.mappers.PaymentCardMapper;
 import com.mappers.UserMapper;
+import com.pagination.KeysetCursor;
+import com.repositories.PaymentCardRep;
 import com.repositories.UserRep;
 import com.specifications.UserSpecification;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
 
+    public static final int MAX_BATCH_SIZE = 100;
+    public static final int MAX_SCROLL_SIZE = 100;
+
+    // keyset по индексу (surname, id)
+    private static final Sort USER_SCROLL_SORT = Sort.by("surname").and(Sort.by("id"));
+    private static final Map<String, Function<String, ?>> USER_CURSOR_KEYS = Map.of(
+            "surname", value -> value,
+            "id", Long::valueOf);
+
     private final UserMapper userMapper;
     private final UserRep userRepository;
     private final AccessChecker accessChecker;
+    private final CacheManager cacheManager;
+    private final PaymentCardRep paymentCardRep;
+    private final PaymentCardMapper paymentCardMapper;
+    private final ChangeEventPublisher changeEvents;
 
     @Autowired
     public UserService(UserMapper userMapper,
                        UserRep userRepository,
-                       AccessChecker accessChecker) {
+                       AccessChecker accessChecker,
+                       CacheManager cacheManager,
+                       PaymentCardRep paymentCardRep,
+                       PaymentCardMapper paymentCardMapper,
+                       ChangeEventPublisher changeEvents) {
         this.userMapper = userMapper;
         this.userRepository = userRepository;
         this.accessChecker = accessChecker;
+        this.cacheManager = cacheManager;
+        this.paymentCardRep = paymentCardRep;
+        this.paymentCardMapper = paymentCardMapper;
+        this.changeEvents = changeEvents;
     }
 
-    @CachePut(value = "users", key = "#result.id")
+    @Caching(
+            put = {@CachePut(value = "users", key = "#result.id")},
+            evict = {@CacheEvict(value = "missingUsers", key = "#result.id")}
+    )
     @Transactional
     public UserDto createUser(UserDto dto, Set<String> roles, boolean isServiceCall) {
 
         accessChecker.checkAdminAccess(roles, isServiceCall); // проверка с флагом
 
-        if (userRepository.findByEmail(dto.getEmail()).isPresent()) {
-            throw new IllegalStateException("User with this email already exists");
-        }
         if (dto.getBirthDate() != null && dto.getBirthDate().isAfter(LocalDate.now())) {
             throw new IllegalStateException("Birth date cannot be in the future");
         }
@@ -51,7 +101,19 @@ public class UserService {
         User user = userMapper.toEntity(dto);
         user.setActive(true);
 
-        return userMapper.toDto(userRepository.save(user));
+        // уникальность email проверяет сам INSERT (unique constraint): один запрос и без гонки
+        // между проверкой и вставкой при параллельных регистрациях
+        User saved;
+        try {
+            saved = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException ex) {
+            if (!UniqueConstraints.violated(ex, UniqueConstraints.USERS_EMAIL)) {
+                throw ex;
+            }
+            throw new IllegalStateException("User with this email already exists");
+        }
+        changeEvents.userChanged(saved, ChangeType.CREATED);
+        return userMapper.toDto(saved);
     }
 
     @Transactional(readOnly = true)
@@ -64,15 +126,55 @@ public class UserService {
                         new EntityNotFoundException("User not found with email: " + email));
     }
 
-    @Transactional(readOnly = true)
+    // read-through: проверка доступа выполняется всегда, даже при попадании в кэш;
+    // параллельные промахи по одному id схлопываются в одну загрузку
     public UserDto getUserById(Long id, Long requesterId, Set<String> roles) {
 
         accessChecker.checkUserAccess(id, requesterId, roles);
 
-        return userRepository.findById(id)
+        return CacheLoads.get(getCache("users"), id, () -> loadUser(id));
+    }
+
+    private UserDto loadUser(Long id) {
+        // отрицательный кэш: несуществующие id не ходят в БД до истечения короткого TTL
+        Cache missingUsersCache = getCache("missingUsers");
+        if (missingUsersCache.get(id) != null) {
+            throw new EntityNotFoundException("User not found with id: " + id);
+        }
+
+        UserDto loaded = userRepository.findWithCardsById(id)
                 .map(userMapper::toDto)
-                .orElseThrow(() ->
-                        new EntityNotFoundException("User not found with id: " + id));
+                .orElse(null);
+        if (loaded == null) {
+            missingUsersCache.put(id, Boolean.TRUE);
+            throw new EntityNotFoundException("User not found with id: " + id);
+        }
+        return loaded;
+    }
+
+    // BATCH: один MGET в кэш, промахи - одним запросом IN, результат в порядке запроса
+    public List<UserDto> getUsersByIds(List<Long> ids, Long requesterId, Set<String> roles) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("No more than " + MAX_BATCH_SIZE + " ids per request");
+        }
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        accessChecker.checkUsersAccess(uniqueIds, requesterId, roles);
+
+        Cache usersCache = getCache("users");
+        Map<Object, Object> cached = CacheBatches.getAll(usersCache, uniqueIds);
+
+        List<Long> misses = uniqueIds.stream()
+                .filter(id -> !cached.containsKey(id))
+                .toList();
+        // результат кладётся в общий кэш - читаем из primary, как и CacheLoads
+        Map<Long, UserDto> loaded = misses.isEmpty() ? Map.of() : CacheBatches.loadAll(usersCache, misses,
+                keys -> PrimaryReads.get(() -> userRepository.findWithCardsByIdIn(keys)).stream()
+                        .collect(Collectors.toMap(User::getId, userMapper::toDto)));
+
+        return uniqueIds.stream()
+                .map(id -> cached.containsKey(id) ? (UserDto) cached.get(id) : loaded.get(id))
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @Transactional(readOnly = true)
@@ -83,8 +185,34 @@ public class UserService {
         Specification<User> spec = UserSpecification.firstNameContains(name)
                 .and(UserSpecification.surnameContains(surname));
 
-        return userRepository.findAll(spec, pageable)
-                .map(userMapper::toDto);
+        Page<User> page = userRepository.findAll(spec, pageable);
+        return new PageImpl<>(toDtosWithCards(page.getContent()), pageable, page.getTotalElements());
+    }
+
+    // SCROLL: seek по (surname, id) вместо OFFSET и без COUNT(*)
+    @Transactional(readOnly = true)
+    public CursorPageDto<UserDto> scrollUsers(String name, String surname, String after,
+                                              int size, Set<String> roles) {
+        accessChecker.checkAdminAccess(roles);
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new BadRequestException("Size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+
+        KeysetScrollPosition position = KeysetCursor.decode(after, USER_CURSOR_KEYS);
+        Specification<User> spec = UserSpecification.firstNameContains(name)
+                .and(UserSpecification.surnameContains(surname))
+                .and(UserSpecification.surnameFrom((String) position.getKeys().get("surname")));
+
+        Window<User> window = userRepository.findBy(spec, query -> query
+                .sortBy(USER_SCROLL_SORT)
+                .limit(size)
+                .scroll(position));
+
+        String nextCursor = window.hasNext()
+                ? KeysetCursor.encode((KeysetScrollPosition) window.positionAt(window.size() - 1))
+                : null;
+        List<UserDto> content = toDtosWithCards(window.getContent());
+        return new CursorPageDto<>(content, nextCursor, content.size());
     }
 
     @CachePut(value = "users", key = "#id")
@@ -105,7 +233,47 @@ public class UserService {
         user.setEmail(dto.getEmail());
         user.setBirthDate(dto.getBirthDate());
 
-        return userMapper.toDto(userRepository.save(user));
+        // flush до маппинга: в DTO (и в кэш) попадает уже увеличенная версия
+        User saved = userRepository.saveAndFlush(user);
+        changeEvents.userChanged(saved, ChangeType.UPDATED);
+        return userMapper.toDto(saved);
+    }
+
+    // PATCH: без предварительного SELECT - один UPDATE ... RETURNING только с переданными полями.
+    // Запись в кэше обновляется на месте (put после коммита), карты берутся из прежней записи или из БД;
+    // если карты владельца изменятся до коммита, put превратится в evict (CacheWatches)
+    @Transactional
+    public UserDto patchUser(Long id, UserPatchDto patch, Long requesterId, Set<String> roles) {
+        accessChecker.checkUserAccess(id, requesterId, roles);
+
+        if (!patch.hasChanges()) {
+            throw new BadRequestException("Nothing to update");
+        }
+        if (patch.getBirthDate() != null && patch.getBirthDate().isAfter(LocalDate.now())) {
+            throw new IllegalStateException("Birth date cannot be in the future");
+        }
+
+        User patched;
+        try {
+            patched = userRepository.patchUser(id, patch.getName(), patch.getSurname(),
+                            patch.getBirthDate(), patch.getEmail(), patch.getVersion())
+                    .orElseThrow(() -> rejectedPatch(id));
+        } catch (DataIntegrityViolationException ex) {
+            if (!UniqueConstraints.violated(ex, UniqueConstraints.USERS_EMAIL)) {
+                throw ex;
+            }
+            throw new IllegalStateException("User with this email already exists");
+        }
+
+        Cache usersCache = getCache("users");
+        UserDto cached = CacheWatches.getForUpdate(usersCache, id, UserDto.class);
+        UserDto dto = userMapper.toSummaryDto(patched);
+        dto.setPaymentCards(cached != null
+                ? cached.getPaymentCards()
+                : paymentCardMapper.toDtoPaymentList(paymentCardRep.findByUserId(id)));
+        usersCache.put(id, dto);
+        changeEvents.userChanged(patched, ChangeType.UPDATED);
+        return dto;
     }
 
     @CacheEvict(value = "users", key = "#id")
@@ -118,7 +286,10 @@ public class UserService {
         if (user.getActive() == true) {
             throw new IllegalStateException("User is already in this state");
         }
-        userRepository.updateUserStatus(id,true);
+        // через сущность, а не bulk update: версия в событии должна совпасть с версией в БД
+        user.setActive(true);
+        userRepository.save(user);
+        changeEvents.userChanged(user, ChangeType.ACTIVATED);
     }
 
     @CacheEvict(value = "users", key = "#id")
@@ -135,6 +306,7 @@ public class UserService {
 
         user.setActive(false);
         userRepository.save(user);
+        changeEvents.userChanged(user, ChangeType.DEACTIVATED);
     }
 
     @CacheEvict(value = {"users", "userCards"}, key = "#id")
@@ -149,6 +321,11 @@ public class UserService {
         }
         user.setActive(false);
         userRepository.delete(user);
+        changeEvents.userChanged(user, ChangeType.DELETED);
+        // карты удаляются каскадом - их потребители тоже должны узнать
+        if (user.getPaymentCards() != null) {
+            user.getPaymentCards().forEach(card -> changeEvents.cardChanged(card, ChangeType.DELETED));
+        }
     }
 
     @CacheEvict(value = {"users", "userCards"}, allEntries = true)
@@ -157,4 +334,35 @@ public class UserService {
         System.out.println("Clearing all user caches");
     }
 
+    // карты всей страницы одним запросом IN вместо ленивой загрузки на каждого пользователя
+    private List<UserDto> toDtosWithCards(List<User> users) {
+        if (users.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = users.stream().map(User::getId).toList();
+        Map<Long, List<PaymentCardDto>> cardsByUser = paymentCardRep.findByUserIdIn(ids).stream()
+                .map(paymentCardMapper::toPaymentDto)
+                .collect(Collectors.groupingBy(PaymentCardDto::getUserId));
+
+        return users.stream()
+                .map(user -> {
+                    UserDto dto = userMapper.toSummaryDto(user);
+                    dto.setPaymentCards(cardsByUser.getOrDefault(user.getId(), List.of()));
+                    return dto;
+                })
+                .toList();
+    }
+
+    // причину отказа выясняем только на редком пути, где UPDATE не затронул строку
+    private RuntimeException rejectedPatch(Long id) {
+        User user = userRepository.findById(id).orElse(null);
+        if (user == null) return new EntityNotFoundException("User not found");
+        if (!user.getActive()) return new IllegalStateException("Cannot update deactivated user");
+        return new ObjectOptimisticLockingFailureException(User.class, id);
+    }
+
+    private Cache getCache(String name) {
+        return Objects.requireNonNull(cacheManager.getCache(name));
+    }
+
 }
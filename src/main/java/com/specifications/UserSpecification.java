@@ -5,17 +5,39 @@ import org.springframework.data.jpa.domain.Specification;
 
 public class UserSpecification {
 
+    private static final char ESCAPE = '\\';
+
+    // lower(name) LIKE '%x%' совпадает с выражением индекса idx_users_name_trgm (pg_trgm)
     public static Specification<User> firstNameContains(String name) {
 
         return (root, query, cb) ->
-                name == null ? null : cb.like(cb.lower(root.get("name")), "%" + name.toLowerCase() + "%");
+                name == null ? null : cb.like(cb.lower(root.get("name")), containsPattern(name), ESCAPE);
 
     }
 
     public static Specification<User> surnameContains(String surname) {
 
         return (root, query, cb) ->
-                surname == null ? null : cb.like(cb.lower(root.get("surname")), "%" + surname.toLowerCase() + "%");
+                surname == null ? null : cb.like(cb.lower(root.get("surname")), containsPattern(surname), ESCAPE);
+
+    }
+
+    // keyset: Spring Data строит "surname > ? OR (surname = ? AND id > ?)", по такому OR Postgres
+    // не начинает поиск в idx_users_surname_id с позиции курсора. Избыточное surname >= ? задаёт
+    // нижнюю границу диапазона индекса - глубокая страница стоит столько же, сколько первая
+    public static Specification<User> surnameFrom(String surname) {
+
+        return (root, query, cb) ->
+                surname == null ? null : cb.greaterThanOrEqualTo(root.get("surname"), surname);
+
+    }
 
+    // % и _ из ввода ищутся буквально, а не как шаблон
+    private static String containsPattern(String value) {
+        String escaped = value.trim().toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
     }
 }
@@ -0,0 +1,130 @@
+package com.integrationTests;
+
+import com.entities.PaymentCard;
+import com.entities.User;
+import com.repositories.PaymentCardRep;
+import com.repositories.UserRep;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@SpringBootTest(properties = {
+        "spring.profiles.active=test",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@EnableAutoConfiguration(exclude = {RedisAutoConfiguration.class})
+class BatchInsertIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private UserRep userRepository;
+
+    @Autowired
+    private PaymentCardRep cardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @DynamicPropertySource
+    static void setDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void hundredUsersInsertedInBatches() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            users.add(user(i));
+        }
+
+        userRepository.saveAll(users);
+
+        assertEquals(100, statistics.getEntityInsertCount());
+        // 2 nextval (pooled-lo по 50 id) + 2 батча INSERT; с IDENTITY было бы 100 INSERT
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void cascadedCardsInsertedInBatches() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 20; i++) {
+                User user = user(i);
+                List<PaymentCard> cards = new ArrayList<>();
+                for (int c = 0; c < 3; c++) {
+                    cards.add(PaymentCard.builder()
+                            .number(String.format("4%015d", i * 10 + c))
+                            .holder("HOLDER")
+                            .expirationDate(LocalDate.of(2030, 1, 1))
+                            .active(true)
+                            .user(user)
+                            .build());
+                }
+                user.setPaymentCards(cards);
+                userRepository.save(user);
+            }
+        });
+
+        assertEquals(80, statistics.getEntityInsertCount());
+        // order_inserts группирует INSERT по таблицам: 3 nextval (20 users, 60 cards) + 3 батча
+        assertTrue(statistics.getPrepareStatementCount() <= 6,
+                "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void sequenceContinuesAfterIdsUsedByHibernate() {
+        User saved = userRepository.save(user(0));
+        Long next = userRepository.save(user(1)).getId();
+
+        assertEquals(saved.getId() + 1, next);
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .name("Name" + i)
+                .surname("Surname")
+                .email("batch" + i + "@example.com")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .active(true)
+                .build();
+    }
+}
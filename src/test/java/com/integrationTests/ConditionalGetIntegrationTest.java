@@ -0,0 +1,140 @@
+package com.integrationTests;
+
+import com.dto.PaymentCardDto;
+import com.dto.UserDto;
+import com.entities.User;
+import com.repositories.PaymentCardRep;
+import com.repositories.UserRep;
+import com.services.PaymentCardService;
+import com.services.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Testcontainers
+@SpringBootTest(properties = {"spring.profiles.active=test"})
+@AutoConfigureMockMvc
+@EnableAutoConfiguration(exclude = {RedisAutoConfiguration.class})
+class ConditionalGetIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PaymentCardService cardService;
+
+    @Autowired
+    private UserRep userRepository;
+
+    @Autowired
+    private PaymentCardRep cardRepository;
+
+    @DynamicPropertySource
+    static void setDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+        userService.clearAllCache();
+        cardService.clearAllCache();
+
+        user = userRepository.saveAndFlush(User.builder()
+                .name("John")
+                .surname("Doe")
+                .email("john@example.com")
+                .birthDate(LocalDate.of(1995, 5, 10))
+                .active(true)
+                .build());
+    }
+
+    @Test
+    void matchingETagReturnsNotModifiedWithoutBody() throws Exception {
+        String eTag = eTagOf("/users/" + user.getId());
+
+        mockMvc.perform(asUser(get("/users/" + user.getId())).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void userUpdateChangesETag() throws Exception {
+        String before = eTagOf("/users/" + user.getId());
+
+        UserDto dto = userService.getUserById(user.getId(), user.getId(), Set.of("ROLE_USER"));
+        dto.setSurname("Smith");
+        userService.updateUser(user.getId(), dto, user.getId(), Set.of("ROLE_USER"));
+
+        mockMvc.perform(asUser(get("/users/" + user.getId())).header(HttpHeaders.IF_NONE_MATCH, before))
+                .andExpect(status().isOk());
+        assertNotEquals(before, eTagOf("/users/" + user.getId()));
+    }
+
+    @Test
+    void newCardChangesUserAndCardListETags() throws Exception {
+        String userBefore = eTagOf("/users/" + user.getId());
+        String cardsBefore = eTagOf("/cards/users/" + user.getId());
+
+        cardService.createCard(user.getId(), PaymentCardDto.builder()
+                .number("1234567890123456")
+                .holder("John Doe")
+                .expirationDate(LocalDate.now().plusYears(2))
+                .active(true)
+                .userId(user.getId())
+                .build(), user.getId(), Set.of("ROLE_USER"));
+
+        mockMvc.perform(asUser(get("/cards/users/" + user.getId())).header(HttpHeaders.IF_NONE_MATCH, cardsBefore))
+                .andExpect(status().isOk());
+        assertNotEquals(userBefore, eTagOf("/users/" + user.getId()));
+    }
+
+    private String eTagOf(String path) throws Exception {
+        String eTag = mockMvc.perform(asUser(get(path)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+        assertFalse(eTag.startsWith("W/"));
+        return eTag;
+    }
+
+    private MockHttpServletRequestBuilder asUser(MockHttpServletRequestBuilder request) {
+        return request.header("X-User-Id", user.getId()).header("X-User-Roles", "ROLE_USER");
+    }
+}
@@ -0,0 +1,124 @@
+package com.integrationTests;
+
+import com.entities.PaymentCard;
+import com.entities.User;
+import com.enums.DataFormat;
+import com.repositories.PaymentCardRep;
+import com.repositories.UserRep;
+import com.services.DataExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@SpringBootTest(properties = {"spring.profiles.active=test"})
+@EnableAutoConfiguration(exclude = {RedisAutoConfiguration.class})
+class DataExportIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private DataExportService dataExportService;
+
+    @Autowired
+    private UserRep userRepository;
+
+    @Autowired
+    private PaymentCardRep cardRepository;
+
+    @DynamicPropertySource
+    static void setDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private static final int USERS = 2_500;
+
+    @BeforeEach
+    void setup() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                    .name(i == 0 ? "Doe, \"Jr\"" : "Name" + i)
+                    .surname("Surname")
+                    .email("user" + i + "@example.com")
+                    .birthDate(LocalDate.of(1990, 1, 1))
+                    .active(true)
+                    .build());
+        }
+        userRepository.saveAll(users);
+        cardRepository.save(PaymentCard.builder()
+                .number("4111111111111111")
+                .holder("JOHN DOE")
+                .expirationDate(LocalDate.of(2030, 12, 31))
+                .active(true)
+                .user(users.getFirst())
+                .build());
+    }
+
+    @Test
+    void ndjsonExportStreamsEveryUserInIdOrder() throws Exception {
+        List<String> lines = export(dataExportService.exportUsers(DataFormat.NDJSON, Set.of("ROLE_ADMIN")));
+
+        assertEquals(USERS, lines.size());
+        assertTrue(lines.getFirst().contains("\"email\":\"user0@example.com\""), lines.getFirst());
+        assertTrue(lines.getFirst().contains("\"birthDate\":\"1990-01-01\""), lines.getFirst());
+        assertTrue(lines.getLast().contains("user" + (USERS - 1) + "@example.com"));
+    }
+
+    @Test
+    void csvExportQuotesSpecialCharacters() throws Exception {
+        List<String> lines = export(dataExportService.exportUsers(DataFormat.CSV, Set.of("ROLE_ADMIN")));
+
+        assertEquals(USERS + 1, lines.size());
+        assertEquals("id,name,surname,birthDate,email,active", lines.getFirst());
+        assertTrue(lines.get(1).contains(",\"Doe, \"\"Jr\"\"\",Surname,1990-01-01,user0@example.com,true"), lines.get(1));
+    }
+
+    @Test
+    void cardExportCarriesOwnerId() throws Exception {
+        Long ownerId = userRepository.findByEmail("user0@example.com").orElseThrow().getId();
+
+        List<String> lines = export(dataExportService.exportCards(DataFormat.CSV, Set.of("ROLE_ADMIN")));
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).contains("," + ownerId + ",4111111111111111,JOHN DOE,2030-12-31,true"), lines.get(1));
+    }
+
+    @Test
+    void exportRequiresAdmin() {
+        assertThrows(SecurityException.class,
+                () -> dataExportService.exportUsers(DataFormat.NDJSON, Set.of("ROLE_USER")));
+    }
+
+    private static List<String> export(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+}
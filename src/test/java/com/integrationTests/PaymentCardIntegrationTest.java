@@ -1,5 +1,6 @@
 package com.integrationTests;
 
+import com.dto.CursorPageDto;
 import com.dto.PaymentCardDto;
 import com.entities.User;
 import com.repositories.PaymentCardRep;
@@ -21,8 +22,13 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -153,4 +159,66 @@ class PaymentCardIntegrationTest {
                 cardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER")));
         assertEquals("User cannot have more than 5 cards", ex.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void card_limit_holds_under_parallel_requests() throws Exception {
+        int attempts = 12;
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(attempts)) {
+            for (int i = 0; i < attempts; i++) {
+                PaymentCardDto dto = cardDto.toBuilder().number(String.format("99990000000000%02d", i)).build();
+                executor.submit(() -> {
+                    start.await();
+                    try {
+                        cardService.createCard(user.getId(), dto, user.getId(), Set.of("ROLE_USER"));
+                        created.incrementAndGet();
+                    } catch (IllegalStateException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        assertEquals(5, created.get());
+        assertEquals(attempts - 5, rejected.get());
+        assertEquals(5, cardRepository.findByUserId(user.getId()).size());
+    }
+
+    @Test
+    void deleting_card_frees_a_slot() {
+        PaymentCardDto first = null;
+        for (int i = 0; i < 5; i++) {
+            cardDto.setNumber("12345678901234" + i);
+            PaymentCardDto created = cardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER"));
+            if (first == null) first = created;
+        }
+        cardService.deleteCard(first.getId(), Set.of("ROLE_ADMIN"));
+
+        cardDto.setNumber("1234567890123459");
+        assertNotNull(cardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER")).getId());
+    }
+
+    @Test
+    void scrollCardsVisitsEveryCardOnceInIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            cardDto.setNumber("12345678901234" + i);
+            ids.add(cardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER")).getId());
+        }
+
+        List<Long> scrolled = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDto<PaymentCardDto> page = cardService.scrollCards(cursor, 2, Set.of("ROLE_ADMIN"));
+            page.getContent().forEach(card -> scrolled.add(card.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(ids.stream().sorted().toList(), scrolled);
+    }
+}
@@ -0,0 +1,164 @@
+package com.integrationTests;
+
+import com.accessChecker.RolesHeader;
+import com.cache.CacheLoads;
+import com.datasource.PrimaryReads;
+import com.datasource.ReplicationLagMonitor;
+import com.security.AuthPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Два независимых Postgres: "реплика" отличается именем БД, отставание задаётся таблицей replication_lag
+@Testcontainers
+@SpringBootTest(properties = {
+        "spring.profiles.active=test",
+        "app.read-replicas.enabled=true",
+        "app.read-replicas.max-lag=5s",
+        "app.read-replicas.lag-check-interval=1h",
+        "app.read-replicas.lag-query=SELECT lag FROM replication_lag"
+})
+@EnableAutoConfiguration(exclude = {RedisAutoConfiguration.class})
+class ReadReplicaRoutingIntegrationTest {
+
+    private static final String PRIMARY_DB = "testdb";
+    private static final String REPLICA_DB = "replicadb";
+
+    @Container
+    static PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName(PRIMARY_DB)
+            .withUsername("test")
+            .withPassword("test");
+
+    @Container
+    static PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName(REPLICA_DB)
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicationLagMonitor lagMonitor;
+
+    @DynamicPropertySource
+    static void setDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("app.read-replicas.instances[0].url", replica::getJdbcUrl);
+    }
+
+    @AfterEach
+    void cleanup() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() throws SQLException {
+        setReplicaLag(0.5);
+
+        assertEquals(REPLICA_DB, readOnly());
+    }
+
+    @Test
+    void lagAboveThresholdFallsBackToPrimary() throws SQLException {
+        setReplicaLag(30);
+
+        assertEquals(PRIMARY_DB, readOnly());
+    }
+
+    @Test
+    void unknownLagFallsBackToPrimary() throws SQLException {
+        setReplicaLag(null);
+
+        assertEquals(PRIMARY_DB, readOnly());
+    }
+
+    @Test
+    void writeTransactionsAlwaysGoToPrimary() throws SQLException {
+        setReplicaLag(0);
+
+        assertEquals(PRIMARY_DB, new TransactionTemplate(transactionManager).execute(status -> currentDatabase()));
+    }
+
+    @Test
+    void userReadsOwnWritesFromPrimary() throws SQLException {
+        setReplicaLag(0);
+
+        actAs(1L);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> currentDatabase());
+        assertEquals(PRIMARY_DB, readOnly());
+
+        actAs(2L); // другой пользователь ничего не писал
+        assertEquals(REPLICA_DB, readOnly());
+    }
+
+    // строка с отстающей реплики осталась бы в общем кэше до TTL
+    @Test
+    void cacheLoadsReadFromPrimary() throws SQLException {
+        setReplicaLag(0);
+
+        assertEquals(PRIMARY_DB, CacheLoads.get(new ConcurrentMapCache("users"), 1L, this::readOnly));
+        assertEquals(PRIMARY_DB, PrimaryReads.get(this::readOnly));
+        assertEquals(REPLICA_DB, readOnly());
+    }
+
+    private String readOnly() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> currentDatabase());
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("SELECT current_database()", String.class);
+    }
+
+    private static void actAs(Long userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        RequestContextHolder.currentRequestAttributes().setAttribute(AuthPrincipal.REQUEST_ATTRIBUTE,
+                new AuthPrincipal(userId, RolesHeader.parse("ROLE_USER"), false), RequestAttributes.SCOPE_REQUEST);
+    }
+
+    // null - запрос отставания ничего не вернул: отставание неизвестно
+    private void setReplicaLag(Double seconds) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(
+                replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS replication_lag (lag DOUBLE PRECISION)");
+            statement.execute("DELETE FROM replication_lag");
+            if (seconds != null) {
+                statement.execute("INSERT INTO replication_lag VALUES (" + seconds + ")");
+            }
+        }
+        lagMonitor.check();
+    }
+}
@@ -0,0 +1,121 @@
+package com.integrationTests;
+
+import com.dto.UserDto;
+import com.dto.UserImportResultDto;
+import com.enums.DataFormat;
+import com.repositories.UserRep;
+import com.services.UserImportService;
+import com.services.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@SpringBootTest(properties = {"spring.profiles.active=test"})
+@EnableAutoConfiguration(exclude = {RedisAutoConfiguration.class})
+class UserImportIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRep userRepository;
+
+    @DynamicPropertySource
+    static void setDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setup() {
+        userRepository.deleteAll();
+        userService.createUser(UserDto.builder()
+                .name("Existing")
+                .surname("User")
+                .email("existing@example.com")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .build(), Set.of("ROLE_ADMIN"), false);
+    }
+
+    @Test
+    void ndjsonImportReportsRowErrors() {
+        String body = """
+                {"name":"John","surname":"Doe","email":"john@example.com","birthDate":"1995-05-10"}
+                {"name":"Jane","surname":"Doe","email":"not-an-email","birthDate":"1995-05-10"}
+                {"name":"Copy","surname":"Doe","email":"john@example.com","birthDate":"1995-05-10"}
+                {"name":"Old","surname":"User","email":"existing@example.com","birthDate":"1995-05-10"}
+                {broken json
+                null
+
+                {"name":"Ann","surname":"Lee","email":"ann@example.com","birthDate":"2000-01-01"}
+                """;
+
+        UserImportResultDto result = userImportService.importUsers(stream(body),
+                DataFormat.NDJSON, Set.of("ROLE_ADMIN"), false);
+
+        assertEquals(7, result.getTotal());
+        assertEquals(2, result.getImported());
+        assertEquals(5, result.getFailed());
+        assertEquals(3, userRepository.count());
+        assertEquals(Set.of(2L, 3L, 4L, 5L, 6L), result.getErrors().stream()
+                .map(UserImportResultDto.RowError::getLine)
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    void csvImportAcrossSeveralChunks() {
+        int rows = 2_500;
+        InputStream header = stream("email,name,surname,birth_date\n");
+        InputStream lines = new SequenceInputStream(Collections.enumeration(IntStream.range(0, rows)
+                .mapToObj(i -> stream("user" + i + "@example.com,\"Name, " + i + "\",Surname,1990-01-01\n"))
+                .toList()));
+
+        UserImportResultDto result = userImportService.importUsers(new SequenceInputStream(header, lines),
+                DataFormat.CSV, Set.of("ROLE_ADMIN"), false);
+
+        assertEquals(rows, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertEquals("Name, 7", userRepository.findByEmail("user7@example.com").orElseThrow().getName());
+    }
+
+    @Test
+    void importRequiresAdmin() {
+        assertThrows(SecurityException.class, () -> userImportService.importUsers(stream(""),
+                DataFormat.NDJSON, Set.of("ROLE_USER"), false));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
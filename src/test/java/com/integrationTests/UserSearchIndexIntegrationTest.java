@@ -0,0 +1,139 @@
+package com.integrationTests;
+
+import com.entities.User;
+import com.repositories.UserRep;
+import com.specifications.UserSpecification;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@SpringBootTest(properties = {
+        "spring.profiles.active=test",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.integrationTests.UserSearchIndexIntegrationTest$SqlCapture"
+})
+@EnableAutoConfiguration(exclude = {RedisAutoConfiguration.class})
+class UserSearchIndexIntegrationTest {
+
+    // достаточно строк, чтобы последовательное чтение стоило дороже выборки по индексу
+    private static final int FILLER_USERS = 50_000;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private UserRep userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void setDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setup() {
+        jdbcTemplate.update("DELETE FROM users");
+        userRepository.saveAll(List.of(
+                user("John", "Doe", "john@example.com"),
+                user("Jo_hn", "Smith", "jo_hn@example.com"),
+                user("Borhan", "Ivanov", "borhan@example.com")));
+        // id вне диапазона users_seq; в name/surname нет триграмм из искомых подстрок
+        jdbcTemplate.update("""
+                INSERT INTO users (id, name, surname, birth_date, email, active)
+                SELECT 1000000 + g, 'Name' || g, 'Surname' || g, DATE '1990-01-01',
+                       'filler' || g || '@example.com', true
+                FROM generate_series(1, ?) g
+                """, FILLER_USERS);
+        jdbcTemplate.execute("VACUUM ANALYZE users");
+    }
+
+    @Test
+    void nameSearchUsesTrigramIndex() {
+        String plan = explain(UserSpecification.firstNameContains("ohn"), "%ohn%");
+
+        assertTrue(plan.contains("Bitmap Index Scan on idx_users_name_trgm"), plan);
+    }
+
+    @Test
+    void surnameSearchUsesTrigramIndex() {
+        String plan = explain(UserSpecification.surnameContains("mit"), "%mit%");
+
+        assertTrue(plan.contains("Bitmap Index Scan on idx_users_surname_trgm"), plan);
+    }
+
+    @Test
+    void wildcardsInInputAreMatchedLiterally() {
+        List<User> found = userRepository.findAll(UserSpecification.firstNameContains("o_h"));
+
+        assertEquals(1, found.size());
+        assertEquals("Jo_hn", found.getFirst().getName());
+    }
+
+    // EXPLAIN ровно того SQL, который сгенерировала спецификация, с обычными настройками планировщика:
+    // индекс окажется в плане, только если по статистике он дешевле последовательного чтения
+    private String explain(Specification<User> spec, String pattern) {
+        SqlCapture.STATEMENTS.clear();
+        userRepository.findAll(spec);
+        String sql = SqlCapture.STATEMENTS.getLast().replace("?", "'" + pattern + "'");
+
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+                return plan.toString();
+            }
+        });
+    }
+
+    private static User user(String name, String surname, String email) {
+        return User.builder()
+                .name(name)
+                .surname(surname)
+                .email(email)
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .active(true)
+                .build();
+    }
+
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
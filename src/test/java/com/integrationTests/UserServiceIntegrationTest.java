@@ -1,6 +1,9 @@
 package com.integrationTests;
 
+import com.dto.CursorPageDto;
 import com.dto.UserDto;
+import com.dto.UserPatchDto;
+import com.entities.User;
 import com.repositories.UserRep;
 import com.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,6 +12,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -16,6 +21,8 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -67,6 +74,17 @@ class UserServiceIntegrationTest {
         assertEquals("Doe", found.getSurname());
     }
 
+    @Test
+    void createUserDuplicateEmailRejectedByConstraint() {
+        userService.createUser(dto, Set.of("ROLE_ADMIN"), false);
+
+        UserDto duplicate = dto.toBuilder().name("Other").build();
+        Exception ex = assertThrows(IllegalStateException.class,
+                () -> userService.createUser(duplicate, Set.of("ROLE_ADMIN"), false));
+        assertEquals("User with this email already exists", ex.getMessage());
+        assertEquals(1, userRepository.count());
+    }
+
     @Test
     void updateUser() {
         UserDto created = userService.createUser(dto, Set.of("ROLE_ADMIN"), false);
@@ -75,6 +93,26 @@ class UserServiceIntegrationTest {
         UserDto updated = userService.updateUser(created.getId(), created, created.getId(), Set.of("ROLE_ADMIN"));
 
         assertEquals("Jane", updated.getName());
+        assertEquals(0L, created.getVersion());
+        assertEquals(1L, updated.getVersion()); // flush до маппинга - DTO с новой версией
+    }
+
+    @Test
+    void patchUserChangesOnlyGivenFieldsAndChecksVersion() {
+        UserDto created = userService.createUser(dto, Set.of("ROLE_ADMIN"), false);
+
+        UserDto patched = userService.patchUser(created.getId(),
+                UserPatchDto.builder().surname("Smith").version(0L).build(), created.getId(), Set.of("ROLE_USER"));
+
+        assertEquals("John", patched.getName());
+        assertEquals("Smith", patched.getSurname());
+        assertEquals(1L, patched.getVersion());
+        assertEquals(patched, userService.getUserById(created.getId(), created.getId(), Set.of("ROLE_USER")));
+
+        // клиент со старой версией получает конфликт, строка не меняется
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.patchUser(created.getId(),
+                UserPatchDto.builder().name("Jane").version(0L).build(), created.getId(), Set.of("ROLE_USER")));
+        assertEquals("John", userRepository.findById(created.getId()).orElseThrow().getName());
     }
 
 
@@ -91,4 +129,29 @@ class UserServiceIntegrationTest {
         assertThrows(RuntimeException.class, () ->
                 userService.getUserByEmail("noone@example.com", Set.of("ROLE_ADMIN")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void scrollUsersVisitsEveryUserOnceAcrossPages() {
+        // повторяющиеся фамилии: порядок внутри фамилии задаёт id
+        String[] surnames = {"Brown", "Adams", "Brown", "Clark", "Adams", "Brown"};
+        for (int i = 0; i < surnames.length; i++) {
+            userService.createUser(dto.toBuilder().surname(surnames[i]).email("user" + i + "@example.com").build(),
+                    Set.of("ROLE_ADMIN"), false);
+        }
+
+        List<Long> scrolled = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDto<UserDto> page = userService.scrollUsers(null, null, cursor, 2, Set.of("ROLE_ADMIN"));
+            assertTrue(page.getSize() <= 2);
+            page.getContent().forEach(user -> scrolled.add(user.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        List<Long> expected = userRepository.findAll(Sort.by("surname").and(Sort.by("id"))).stream()
+                .map(User::getId)
+                .toList();
+        assertEquals(surnames.length, expected.size());
+        assertEquals(expected, scrolled);
+    }
+}
@@ -0,0 +1,45 @@
+package com.unitTests;
+
+import com.cardNumberFilter.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegatives() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(cardNumber(i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(cardNumber(i)));
+        }
+    }
+
+    @Test
+    void falsePositiveRateCloseToTarget() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(cardNumber(i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 10_000; i < 110_000; i++) {
+            if (filter.mightContain(cardNumber(i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+        assertTrue(filter.expectedFalsePositiveRate() < 0.02);
+        // ~9.6 бит на элемент при p = 1%
+        assertTrue(filter.memoryBytes() < 10_000 * 10 / 8 + 64);
+    }
+
+    private static String cardNumber(int i) {
+        return String.format("4%015d", i);
+    }
+}
@@ -0,0 +1,60 @@
+package com.unitTests;
+
+import com.accessChecker.AccessChecker;
+import com.dto.CacheStatsDto;
+import com.services.CacheAdminService;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheAdminServiceTest {
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private AccessChecker accessChecker;
+
+    @InjectMocks
+    private CacheAdminService cacheAdminService;
+
+    @Test
+    void nonAdminIsRejectedBeforeTouchingCaches() {
+        doThrow(new SecurityException("Access denied")).when(accessChecker).checkAdminAccess(Set.of("ROLE_USER"));
+
+        assertThrows(SecurityException.class, () -> cacheAdminService.getAllStats(Set.of("ROLE_USER")));
+        verifyNoInteractions(cacheManager);
+    }
+
+    @Test
+    void unknownCacheIsNotCreated() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of("users"));
+
+        assertThrows(EntityNotFoundException.class,
+                () -> cacheAdminService.clear("typo", Set.of("ROLE_ADMIN")));
+        verify(cacheManager, never()).getCache("typo");
+    }
+
+    @Test
+    void statsForSimpleCacheContainOnlyName() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of("users"));
+        when(cacheManager.getCache("users")).thenReturn(new ConcurrentMapCache("users"));
+
+        CacheStatsDto stats = cacheAdminService.getStats("users", 10, Set.of("ROLE_ADMIN"));
+
+        assertEquals("users", stats.getName());
+        assertNull(stats.getRemoteKeys());
+    }
+}
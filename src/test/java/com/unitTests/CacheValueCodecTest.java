@@ -0,0 +1,141 @@
+package com.unitTests;
+
+import com.cache.CacheEntry;
+import com.cache.CacheValueCodec;
+import com.dto.PaymentCardDto;
+import com.dto.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheValueCodecTest {
+
+    private SimpleMeterRegistry registry;
+    private CacheValueCodec codec;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        codec = new CacheValueCodec("users", registry, getClass().getClassLoader());
+    }
+
+    @Test
+    void userWithCardsRoundTrip() {
+        UserDto user = user();
+
+        byte[] bytes = codec.serialize(user);
+
+        assertEquals(user, codec.deserialize(bytes));
+        assertTrue(bytes.length < new JdkSerializationRedisSerializer().serialize(user).length);
+    }
+
+    @Test
+    void nullFieldsAndPreEpochDatesSurvive() {
+        UserDto user = UserDto.builder()
+                .id(7L)
+                .name("Old")
+                .birthDate(LocalDate.of(1901, 2, 3))
+                .active(false)
+                .build();
+
+        assertEquals(user, codec.deserialize(codec.serialize(user)));
+    }
+
+    @Test
+    void cardListAndBooleanRoundTrip() {
+        List<PaymentCardDto> cards = user().getPaymentCards();
+
+        assertEquals(cards, codec.deserialize(codec.serialize(cards)));
+        assertEquals(List.of(), codec.deserialize(codec.serialize(List.of())));
+        assertEquals(Boolean.TRUE, codec.deserialize(codec.serialize(Boolean.TRUE)));
+    }
+
+    @Test
+    void entryKeepsExpiryAndLoadTime() {
+        CacheEntry user = new CacheEntry(user(), 1_700_000_000_000L, 42);
+        CacheEntry other = new CacheEntry(Map.of("k", "v"), 1_700_000_000_000L, 0);
+
+        assertEquals(user, codec.deserialize(codec.serialize(user)));
+        assertEquals(other, codec.deserialize(codec.serialize(other)));
+    }
+
+    @Test
+    void otherValuesFallBackToJdkSerialization() {
+        Map<String, Integer> value = Map.of("a", 1);
+
+        assertEquals(value, codec.deserialize(codec.serialize(value)));
+    }
+
+    @Test
+    void readsEntriesWrittenWithJdkSerialization() {
+        UserDto user = user();
+        byte[] legacy = new JdkSerializationRedisSerializer().serialize(user);
+
+        assertEquals(user, codec.deserialize(legacy));
+    }
+
+    @Test
+    void unknownFormatVersionIsTreatedAsMiss() {
+        byte[] bytes = codec.serialize(user());
+        bytes[0] = 99;
+
+        assertNull(codec.deserialize(bytes));
+    }
+
+    @Test
+    void entriesWithoutEntityVersionAreReadWithNullVersion() {
+        UserDto user = user();
+        user.setPaymentCards(null);
+        user.setVersion(null);
+        // v1 = v2 без varint версии после маски: [версия][тип][маска][0][поля]
+        byte[] v2 = codec.serialize(user);
+        byte[] v1 = new byte[v2.length - 1];
+        v1[0] = 1;
+        v1[1] = v2[1];
+        v1[2] = v2[2];
+        System.arraycopy(v2, 4, v1, 3, v2.length - 4);
+
+        UserDto decoded = (UserDto) codec.deserialize(v1);
+
+        assertEquals(user, decoded);
+        assertNull(decoded.getVersion());
+    }
+
+    @Test
+    void recordsSizeAndTimings() {
+        byte[] bytes = codec.serialize(user());
+        codec.deserialize(bytes);
+
+        assertEquals(bytes.length, registry.get("cache.codec.size").tag("cache", "users").summary().totalAmount());
+        assertEquals(1, registry.get("cache.codec.time").tag("op", "encode").timer().count());
+        assertEquals(1, registry.get("cache.codec.time").tag("op", "decode").timer().count());
+    }
+
+    private static UserDto user() {
+        return UserDto.builder()
+                .id(1L)
+                .name("Иван")
+                .surname("Doe")
+                .email("john@example.com")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .active(true)
+                .version(3L)
+                .paymentCards(List.of(PaymentCardDto.builder()
+                        .id(10L)
+                        .number("4111111111111111")
+                        .holder("JOHN DOE")
+                        .expirationDate(LocalDate.of(2030, 12, 31))
+                        .active(true)
+                        .userId(1L)
+                        .version(0L)
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.unitTests;
+
+import com.changeEvents.ChangeEventPublisher;
+import com.config.ChangeEventProperties;
+import com.entities.PaymentCard;
+import com.entities.User;
+import com.enums.ChangeType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeEventPublisherTest {
+
+    @Mock
+    private ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStreamCommands streamCommands;
+
+    private ChangeEventPublisher publisher;
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        when(redisTemplateProvider.getIfAvailable()).thenReturn(redisTemplate);
+        publisher = new ChangeEventPublisher(redisTemplateProvider, new ChangeEventProperties(),
+                new SimpleMeterRegistry());
+
+        user = new User();
+        user.setId(1L);
+        user.setVersion(0L);
+    }
+
+    @AfterEach
+    void cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void eventsAreSentAfterCommitWithFlushedVersion() {
+        PaymentCard card = new PaymentCard();
+        card.setId(10L);
+        card.setUser(user);
+        card.setVersion(4L);
+
+        beginTransaction();
+        publisher.userChanged(user, ChangeType.UPDATED);
+        publisher.cardChanged(card, ChangeType.DELETED);
+        user.setVersion(1L); // flush при коммите
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        List<Map<String, String>> events = sentEvents();
+        assertEquals(2, events.size());
+        assertEquals(Map.of("entity", "user", "id", "1", "type", "UPDATED", "version", "1"),
+                withoutTimestamp(events.get(0)));
+        // удаление - следующая версия после последней записанной
+        assertEquals(Map.of("entity", "card", "id", "10", "userId", "1", "type", "DELETED", "version", "5"),
+                withoutTimestamp(events.get(1)));
+    }
+
+    @Test
+    void rollbackSendsNothing() {
+        beginTransaction();
+        publisher.userChanged(user, ChangeType.CREATED);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void redisFailureDoesNotBreakCaller() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new IllegalStateException("Redis is down"));
+
+        assertDoesNotThrow(() -> publisher.userChanged(user, ChangeType.CREATED));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Map<String, String>> sentEvents() {
+        ArgumentCaptor<RedisCallback> callback = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(redisTemplate).executePipelined(callback.capture());
+        when(connection.streamCommands()).thenReturn(streamCommands);
+        callback.getValue().doInRedis(connection);
+
+        ArgumentCaptor<MapRecord> records = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamCommands, times(2)).xAdd(records.capture(), any(RedisStreamCommands.XAddOptions.class));
+        return records.getAllValues().stream()
+                .map(record -> decode(((MapRecord<byte[], byte[], byte[]>) record).getValue()))
+                .toList();
+    }
+
+    private static Map<String, String> decode(Map<byte[], byte[]> raw) {
+        Map<String, String> fields = new HashMap<>();
+        raw.forEach((field, value) -> fields.put(
+                new String(field, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8)));
+        return fields;
+    }
+
+    private static Map<String, String> withoutTimestamp(Map<String, String> fields) {
+        assertTrue(fields.containsKey("ts"));
+        Map<String, String> copy = new HashMap<>(fields);
+        copy.remove("ts");
+        return copy;
+    }
+
+    private static void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+}
@@ -0,0 +1,62 @@
+package com.unitTests;
+
+import com.datasource.ConnectionLimitingDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionLimitingDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private Connection connection;
+
+    @Test
+    void permitReturnedOnClose() throws Exception {
+        when(target.getConnection()).thenReturn(connection);
+        ConnectionLimitingDataSource dataSource =
+                new ConnectionLimitingDataSource(target, 1, Duration.ofMillis(50), 10);
+
+        Connection first = dataSource.getConnection();
+        assertEquals(0, dataSource.availablePermits());
+
+        first.close();
+        first.close(); // повторный close не должен выдать лишний permit
+        assertEquals(1, dataSource.availablePermits());
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void timesOutWhenPoolExhausted() throws Exception {
+        when(target.getConnection()).thenReturn(connection);
+        ConnectionLimitingDataSource dataSource =
+                new ConnectionLimitingDataSource(target, 1, Duration.ofMillis(50), 10);
+
+        dataSource.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        verify(target, times(1)).getConnection();
+    }
+
+    @Test
+    void permitReleasedWhenTargetFails() throws Exception {
+        when(target.getConnection()).thenThrow(new SQLTransientConnectionException("down"));
+        ConnectionLimitingDataSource dataSource =
+                new ConnectionLimitingDataSource(target, 1, Duration.ofMillis(50), 10);
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(1, dataSource.availablePermits());
+    }
+}
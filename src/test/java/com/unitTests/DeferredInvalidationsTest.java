@@ -0,0 +1,197 @@
+package com.unitTests;
+
+import com.cache.CacheGenerations;
+import com.cache.CacheInvalidationBus;
+import com.cache.DeferredInvalidations;
+import com.cache.TwoLevelCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeferredInvalidationsTest {
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    @Mock
+    private RedisConnectionFactory connectionFactory;
+
+    @Mock
+    private RedisConnection connection;
+
+    private ConcurrentMapCache remote;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        remote = new ConcurrentMapCache("users");
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void evictInsideTransactionIsAppliedAfterCommit() {
+        TwoLevelCache cache = cache(new DeferredInvalidations(null, 10, meterRegistry));
+        remote.put(1L, "John");
+
+        beginTransaction();
+        cache.evict(1L);
+        assertEquals("John", remote.get(1L, String.class)); // до коммита читатели видят старую запись
+        verify(invalidationBus, never()).publishEvict("users", 1L);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertNull(remote.get(1L));
+        verify(invalidationBus).publishEvict("users", 1L);
+    }
+
+    @Test
+    void rollbackDiscardsDeferredChanges() {
+        TwoLevelCache cache = cache(new DeferredInvalidations(null, 10, meterRegistry));
+        remote.put(1L, "John");
+
+        beginTransaction();
+        cache.put(1L, "Anna");
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals("John", remote.get(1L, String.class));
+    }
+
+    @Test
+    void evictOutsideTransactionIsImmediate() {
+        TwoLevelCache cache = cache(new DeferredInvalidations(null, 10, meterRegistry));
+        remote.put(1L, "John");
+
+        cache.evict(1L);
+
+        assertNull(remote.get(1L));
+    }
+
+    @Test
+    void failedFlushIsRetriedFromOutbox() {
+        DeferredInvalidations deferred = new DeferredInvalidations(connectionFactory, 10, meterRegistry);
+        TwoLevelCache cache = cache(deferred);
+        remote.put(1L, "John");
+        when(connectionFactory.getConnection())
+                .thenThrow(new RedisConnectionFailureException("Redis is down"))
+                .thenReturn(connection);
+
+        beginTransaction();
+        cache.evict(1L);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals("John", remote.get(1L, String.class));
+        assertEquals(1, meterRegistry.get("cache.invalidation.outbox.size").gauge().value());
+        assertEquals(1, meterRegistry.get("cache.invalidation.flush.failures").counter().count());
+
+        deferred.retryOutbox();
+
+        assertNull(remote.get(1L));
+        assertEquals(0, meterRegistry.get("cache.invalidation.outbox.size").gauge().value());
+        verify(connection).openPipeline();
+        verify(connection).closePipeline();
+    }
+
+    // L1 этого узла не зависит от Redis: недоступный Redis не оставляет на узле значения до очистки
+    @Test
+    void failedDeferredClearStillClearsLocalLevel() {
+        DeferredInvalidations deferred = new DeferredInvalidations(null, 10, meterRegistry);
+        CacheGenerations generations = mock(CacheGenerations.class);
+        com.github.benmanes.caffeine.cache.Cache<String, Cache.ValueWrapper> local = Caffeine.newBuilder()
+                .maximumSize(100)
+                .build();
+        TwoLevelCache cache = new TwoLevelCache("users", remote, local, invalidationBus, null, null,
+                meterRegistry, null, Runnable::run, generations, deferred);
+        cache.put(1L, "John");
+        doThrow(new RedisConnectionFailureException("Redis is down")).doNothing().when(generations).bump("users");
+
+        beginTransaction();
+        cache.clear();
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertNull(local.getIfPresent("1"));
+        verify(invalidationBus, never()).publishClear("users");
+
+        deferred.retryOutbox();
+
+        verify(generations, times(2)).bump("users");
+        verify(invalidationBus).publishClear("users");
+    }
+
+    @Test
+    void putFromWatchedReadIsAppliedAfterCommit() {
+        TwoLevelCache cache = cache(new DeferredInvalidations(null, 10, meterRegistry));
+        remote.put(1L, "John");
+
+        beginTransaction();
+        String read = cache.getForUpdate(1L, String.class);
+        cache.put(1L, read + " Smith");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals("John Smith", remote.get(1L, String.class));
+        assertEquals("John Smith", cache.get(1L, String.class));
+    }
+
+    // другая транзакция изменила ключ между нашим чтением и коммитом: её данные не перетираются
+    @Test
+    void putFromWatchedReadBecomesEvictWhenKeyIsInvalidatedBeforeCommit() {
+        TwoLevelCache cache = cache(new DeferredInvalidations(null, 10, meterRegistry));
+        remote.put(1L, "John");
+
+        beginTransaction();
+        String read = cache.getForUpdate(1L, String.class);
+        CompletableFuture.runAsync(() -> cache.evict(1L)).join(); // вне нашей транзакции
+        cache.put(1L, read + " Smith");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertNull(remote.get(1L));
+        assertNull(cache.get(1L));
+    }
+
+    private TwoLevelCache cache(DeferredInvalidations deferred) {
+        return new TwoLevelCache("users", remote, Caffeine.newBuilder().maximumSize(100).build(),
+                invalidationBus, null, null, meterRegistry, null, Runnable::run, null, deferred);
+    }
+
+    private static void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    // как AbstractPlatformTransactionManager: afterCompletion при ещё активной синхронизации
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+}
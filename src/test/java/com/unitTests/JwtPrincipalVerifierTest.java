@@ -0,0 +1,99 @@
+package com.unitTests;
+
+import com.config.SecurityProperties;
+import com.enums.Role;
+import com.exceptions.UnauthorizedException;
+import com.security.AuthPrincipal;
+import com.security.JwtPrincipalVerifier;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtPrincipalVerifierTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private JwtPrincipalVerifier verifier;
+
+    @BeforeEach
+    void setup() {
+        SecurityProperties properties = new SecurityProperties();
+        properties.setJwtSecret(SECRET);
+        verifier = new JwtPrincipalVerifier(properties);
+    }
+
+    @Test
+    void verifiesClaimsIntoRoleMask() {
+        AuthPrincipal principal = verifier.verify(token(SECRET, "42", List.of("ROLE_USER", "ROLE_ADMIN"), 600));
+
+        assertEquals(42L, principal.userId());
+        assertTrue(principal.roles().has(Role.ROLE_ADMIN));
+        assertFalse(principal.roles().has(Role.SYSTEM));
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), principal.roles());
+    }
+
+    @Test
+    void sameTokenIsVerifiedOnce() {
+        String token = token(SECRET, "42", List.of("ROLE_USER"), 600);
+
+        assertSame(verifier.verify(token), verifier.verify(token));
+    }
+
+    @Test
+    void rejectsForeignSignature() {
+        String token = token("ffffffffffffffffffffffffffffffffffffffffffffffff", "42", List.of("ROLE_ADMIN"), 600);
+
+        assertThrows(UnauthorizedException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        String token = token(SECRET, "42", List.of("ROLE_USER"), -600);
+
+        assertThrows(UnauthorizedException.class, () -> verifier.verify(token));
+    }
+
+    @Test
+    void rejectsTokenWithoutExpiration() {
+        String token = Jwts.builder()
+                .setSubject("42")
+                .claim("roles", List.of("ROLE_ADMIN"))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+
+        assertThrows(UnauthorizedException.class, () -> verifier.verify(token));
+        assertThrows(UnauthorizedException.class, () -> verifier.verify(token)); // не закеширован
+    }
+
+    @Test
+    void disabledWithoutSecret() {
+        assertTrue(verifier.isEnabled());
+        assertFalse(new JwtPrincipalVerifier(new SecurityProperties()).isEnabled());
+    }
+
+    @Test
+    void serviceTokenWithoutNumericSubject() {
+        AuthPrincipal principal = verifier.verify(token(SECRET, "auth-service", List.of("SYSTEM"), 600));
+
+        assertNull(principal.userId());
+        assertTrue(principal.serviceCall());
+    }
+
+    private static String token(String secret, String subject, List<String> roles, long ttlSeconds) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .claim("roles", roles)
+                .setExpiration(Date.from(Instant.now().plusSeconds(ttlSeconds)))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+}
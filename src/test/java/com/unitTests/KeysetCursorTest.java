@@ -0,0 +1,54 @@
+package com.unitTests;
+
+import com.exceptions.BadRequestException;
+import com.pagination.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    private static final Map<String, Function<String, ?>> USER_KEYS = Map.of(
+            "surname", value -> value,
+            "id", Long::valueOf);
+
+    @Test
+    void roundTripKeepsTypedValues() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("surname", "O'Brien & Sons=1");
+        keys.put("id", 42L);
+
+        KeysetScrollPosition decoded = KeysetCursor.decode(
+                KeysetCursor.encode(ScrollPosition.forward(keys)), USER_KEYS);
+
+        assertEquals(keys, decoded.getKeys());
+        assertEquals(42L, decoded.getKeys().get("id"));
+    }
+
+    @Test
+    void missingCursorStartsFromBeginning() {
+        assertTrue(KeysetCursor.decode(null, USER_KEYS).isInitial());
+        assertTrue(KeysetCursor.decode(" ", USER_KEYS).isInitial());
+    }
+
+    @Test
+    void invalidCursorsAreBadRequests() {
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode("not base64!", USER_KEYS));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(raw("surname=Doe"), USER_KEYS));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(raw("surname=Doe&id=x"), USER_KEYS));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(raw("surname=Doe&name=1"), USER_KEYS));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(raw("surname"), USER_KEYS));
+    }
+
+    private static String raw(String keys) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(keys.getBytes(StandardCharsets.UTF_8));
+    }
+}
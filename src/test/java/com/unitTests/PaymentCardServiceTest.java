@@ -1,15 +1,21 @@
 package com.unitTests;
 
 import com.accessChecker.AccessChecker;
+import com.cardNumberFilter.CardNumberFilter;
+import com.changeEvents.ChangeEventPublisher;
 import com.dto.PaymentCardDto;
+import com.dto.PaymentCardPatchDto;
+import com.dto.UserDto;
 import com.entities.PaymentCard;
 import com.entities.User;
+import com.enums.ChangeType;
 import com.mappers.PaymentCardMapper;
 import com.repositories.PaymentCardRep;
 import com.repositories.UserRep;
 import com.services.PaymentCardService;
 import com.exceptions.BadRequestException;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,8 +26,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -43,12 +53,21 @@ class PaymentCardServiceTest {
     @Mock
     private AccessChecker accessChecker;
 
+    @Mock
+    private CardNumberFilter cardNumberFilter;
+
     @Mock
     private CacheManager cacheManager;
 
+    @Mock
+    private ChangeEventPublisher changeEvents;
+
     @Mock
     private Cache userCardsCache;
 
+    @Mock
+    private Cache usersCache;
+
     @InjectMocks
     private PaymentCardService paymentCardService;
 
@@ -83,10 +102,12 @@ class PaymentCardServiceTest {
 
     @Test
     void createCardSuccess() {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(userRepository.reserveCardSlot(user.getId(), PaymentCardService.MAX_CARDS_PER_USER)).thenReturn(1);
+        when(userRepository.getReferenceById(user.getId())).thenReturn(user);
+        when(cardNumberFilter.mightContain(cardDto.getNumber())).thenReturn(true);
         when(paymentCardRep.existsByNumber(cardDto.getNumber())).thenReturn(false);
         when(paymentCardMapper.toPaymentCardEntity(cardDto)).thenReturn(card);
-        when(paymentCardRep.save(any())).thenReturn(card);
+        when(paymentCardRep.saveAndFlush(any())).thenReturn(card);
         when(paymentCardMapper.toPaymentDto(card)).thenReturn(cardDto);
 
         doNothing().when(accessChecker).checkUserAccess(anyLong(), anyLong(), any());
@@ -96,11 +117,43 @@ class PaymentCardServiceTest {
 
         assertEquals(cardDto.getNumber(), result.getNumber());
         assertTrue(result.getActive());
+        verify(cardNumberFilter).recordFalsePositive();
+        verify(cardNumberFilter).add(card.getNumber());
+    }
+
+    @Test
+    void createCardSkipsExistsQueryWhenFilterSaysAbsent() {
+        when(userRepository.reserveCardSlot(user.getId(), PaymentCardService.MAX_CARDS_PER_USER)).thenReturn(1);
+        when(userRepository.getReferenceById(user.getId())).thenReturn(user);
+        when(cardNumberFilter.mightContain(cardDto.getNumber())).thenReturn(false);
+        when(paymentCardMapper.toPaymentCardEntity(cardDto)).thenReturn(card);
+        when(paymentCardRep.saveAndFlush(any())).thenReturn(card);
+        when(paymentCardMapper.toPaymentDto(card)).thenReturn(cardDto);
+
+        paymentCardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER"));
+
+        verify(paymentCardRep, never()).existsByNumber(any());
+    }
+
+    @Test
+    void createCardDuplicateCaughtByConstraint() {
+        when(userRepository.reserveCardSlot(user.getId(), PaymentCardService.MAX_CARDS_PER_USER)).thenReturn(1);
+        when(userRepository.getReferenceById(user.getId())).thenReturn(user);
+        when(cardNumberFilter.mightContain(cardDto.getNumber())).thenReturn(false);
+        when(paymentCardMapper.toPaymentCardEntity(cardDto)).thenReturn(card);
+        when(paymentCardRep.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", new SQLException("error", "23505"),
+                        "payment_cards_number_key")));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentCardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER")));
+        verify(cardNumberFilter, never()).add(any());
     }
 
     @Test
     void createCardInactiveUser() {
         user.setActive(false);
+        when(userRepository.reserveCardSlot(user.getId(), PaymentCardService.MAX_CARDS_PER_USER)).thenReturn(0);
         when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
         doNothing().when(accessChecker).checkUserAccess(anyLong(), anyLong(), any());
 
@@ -108,6 +161,52 @@ class PaymentCardServiceTest {
                 () -> paymentCardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER")));
     }
 
+    @Test
+    void createCardLimitReached() {
+        when(userRepository.reserveCardSlot(user.getId(), PaymentCardService.MAX_CARDS_PER_USER)).thenReturn(0);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        Exception ex = assertThrows(IllegalStateException.class,
+                () -> paymentCardService.createCard(user.getId(), cardDto, user.getId(), Set.of("ROLE_USER")));
+        assertEquals("User cannot have more than 5 cards", ex.getMessage());
+        verify(paymentCardRep, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void getCardsByUserIdChecksAccessBeforeCache() {
+        doThrow(new SecurityException("Access denied"))
+                .when(accessChecker).checkUserAccess(user.getId(), 2L, Set.of("ROLE_USER"));
+
+        assertThrows(SecurityException.class,
+                () -> paymentCardService.getCardsByUserId(user.getId(), 2L, Set.of("ROLE_USER")));
+        verifyNoInteractions(cacheManager);
+    }
+
+    @Test
+    void getCardsByUserIdLoadsOnMissWithoutExistsQuery() {
+        when(cacheManager.getCache("userCards")).thenReturn(new ConcurrentMapCache("userCards"));
+        when(paymentCardRep.findByUserId(user.getId())).thenReturn(List.of(card));
+        when(paymentCardMapper.toDtoPaymentList(List.of(card))).thenReturn(List.of(cardDto));
+
+        assertEquals(List.of(cardDto),
+                paymentCardService.getCardsByUserId(user.getId(), user.getId(), Set.of("ROLE_USER")));
+        assertEquals(List.of(cardDto),
+                paymentCardService.getCardsByUserId(user.getId(), user.getId(), Set.of("ROLE_USER")));
+
+        verify(paymentCardRep).findByUserId(user.getId());
+        verify(userRepository, never()).existsById(any());
+    }
+
+    @Test
+    void getCardsByUserIdUnknownUser() {
+        when(cacheManager.getCache("userCards")).thenReturn(new ConcurrentMapCache("userCards"));
+        when(paymentCardRep.findByUserId(99L)).thenReturn(List.of());
+        when(userRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentCardService.getCardsByUserId(99L, 99L, Set.of("ROLE_USER")));
+    }
+
     @Test
     void getCardByIdSuccess() {
         when(paymentCardRep.findById(card.getId())).thenReturn(Optional.of(card));
@@ -123,6 +222,7 @@ class PaymentCardServiceTest {
     void updateCardSuccess() {
 
         when(cacheManager.getCache("userCards")).thenReturn(userCardsCache);
+        when(cacheManager.getCache("users")).thenReturn(usersCache);
         doNothing().when(userCardsCache).evict(any());
 
         PaymentCardDto updatedDto = PaymentCardDto.builder()
@@ -135,7 +235,7 @@ class PaymentCardServiceTest {
                 .build();
 
         when(paymentCardRep.findById(card.getId())).thenReturn(Optional.of(card));
-        when(paymentCardRep.save(any())).thenReturn(card);
+        when(paymentCardRep.saveAndFlush(any())).thenReturn(card);
         when(paymentCardMapper.toPaymentDto(card)).thenReturn(updatedDto);
 
         doNothing().when(accessChecker).checkUserAccess(anyLong(), anyLong(), any());
@@ -151,17 +251,24 @@ class PaymentCardServiceTest {
 
     @Test
     void deactivateCardSuccess() {
+        when(cacheManager.getCache("userCards")).thenReturn(userCardsCache);
+        when(cacheManager.getCache("users")).thenReturn(usersCache);
         when(paymentCardRep.findById(card.getId())).thenReturn(Optional.of(card));
         doNothing().when(accessChecker).checkAdminAccess(any());
 
         paymentCardService.deactivateCard(card.getId(), Set.of("ROLE_ADMIN"));
 
         assertFalse(card.getActive());
+        verify(usersCache).evict(user.getId());
+        verify(userCardsCache).evict(user.getId());
+        verify(changeEvents).cardChanged(card, ChangeType.DEACTIVATED);
     }
 
     @Test
     void activateCardSuccess() {
         card.setActive(false);
+        when(cacheManager.getCache("userCards")).thenReturn(userCardsCache);
+        when(cacheManager.getCache("users")).thenReturn(usersCache);
         when(paymentCardRep.findById(card.getId())).thenReturn(Optional.of(card));
         doNothing().when(accessChecker).checkAdminAccess(any());
         when(paymentCardRep.save(any())).thenReturn(card);
@@ -170,4 +277,39 @@ class PaymentCardServiceTest {
 
         assertTrue(card.getActive());
     }
-}
\ No newline at end of file
+
+    @Test
+    void patchCardRefreshesOwnerCachesInPlace() {
+        PaymentCardDto other = PaymentCardDto.builder().id(2L).userId(user.getId()).build();
+        PaymentCardDto patched = cardDto.toBuilder().holder("Jane Doe").version(1L).build();
+        Cache cardsCache = new ConcurrentMapCache("cards");
+        Cache ownerCardsCache = new ConcurrentMapCache("userCards");
+        Cache ownerCache = new ConcurrentMapCache("users");
+        ownerCardsCache.put(user.getId(), List.of(cardDto, other));
+        ownerCache.put(user.getId(), UserDto.builder().id(user.getId()).paymentCards(List.of(cardDto, other)).build());
+        Set<String> roles = Set.of("ROLE_USER");
+
+        when(accessChecker.ownerFilter(user.getId(), roles)).thenReturn(user.getId());
+        when(paymentCardRep.patchCard(card.getId(), user.getId(), "Jane Doe", null, 0L)).thenReturn(Optional.of(card));
+        when(paymentCardMapper.toPaymentDto(card)).thenReturn(patched);
+        when(cacheManager.getCache("cards")).thenReturn(cardsCache);
+        when(cacheManager.getCache("userCards")).thenReturn(ownerCardsCache);
+        when(cacheManager.getCache("users")).thenReturn(ownerCache);
+
+        PaymentCardDto result = paymentCardService.patchCard(card.getId(),
+                PaymentCardPatchDto.builder().holder("Jane Doe").version(0L).build(), user.getId(), roles);
+
+        assertSame(patched, result);
+        assertSame(patched, cardsCache.get(card.getId(), PaymentCardDto.class));
+        assertEquals(List.of(patched, other), ownerCardsCache.get(user.getId(), List.class));
+        assertEquals(List.of(patched, other), ownerCache.get(user.getId(), UserDto.class).getPaymentCards());
+        verify(changeEvents).cardChanged(card, ChangeType.UPDATED);
+    }
+
+    @Test
+    void patchCardWithoutChangesIsRejected() {
+        assertThrows(BadRequestException.class, () -> paymentCardService.patchCard(card.getId(),
+                PaymentCardPatchDto.builder().version(0L).build(), user.getId(), Set.of("ROLE_USER")));
+        verifyNoInteractions(paymentCardRep);
+    }
+}
@@ -0,0 +1,284 @@
+package com.unitTests;
+
+import com.cache.CacheEntry;
+import com.cache.CacheGenerations;
+import com.cache.CacheInvalidationBus;
+import com.cache.EarlyRefreshPolicy;
+import com.cache.TwoLevelCache;
+import com.dto.CacheStatsDto;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheTest {
+
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    private ConcurrentMapCache remote;
+    private TwoLevelCache cache;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        remote = new ConcurrentMapCache("users");
+        com.github.benmanes.caffeine.cache.Cache<String, Cache.ValueWrapper> local = Caffeine.newBuilder()
+                .maximumSize(100)
+                .build();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new TwoLevelCache("users", remote, local, invalidationBus, null, null, meterRegistry,
+                null, Runnable::run, null, null);
+    }
+
+    @Test
+    void hitServedFromLocalAfterFirstRead() {
+        remote.put(1L, "John");
+
+        assertEquals("John", cache.get(1L, String.class));
+
+        remote.evict(1L); // L2 пуст, но L1 ещё держит значение
+        assertEquals("John", cache.get(1L, String.class));
+    }
+
+    @Test
+    void putWritesBothLevelsAndPublishesEvict() {
+        cache.put(1L, "John");
+
+        assertEquals("John", remote.get(1L, String.class));
+        assertEquals("John", cache.get(1L, String.class));
+        verify(invalidationBus).publishEvict("users", 1L);
+    }
+
+    @Test
+    void evictRemovesBothLevelsAndPublishes() {
+        remote.put(1L, "John");
+        assertEquals("John", cache.get(1L, String.class)); // значение попало и в L1
+
+        cache.evict(1L);
+
+        assertNull(remote.get(1L));
+        assertNull(cache.get(1L));
+        verify(invalidationBus).publishEvict("users", 1L);
+    }
+
+    @Test
+    void loaderResultIsCachedInBothLevels() {
+        String value = cache.get(1L, () -> "Loaded");
+
+        assertEquals("Loaded", value);
+        assertEquals("Loaded", remote.get(1L, String.class));
+        assertEquals("Loaded", cache.get(1L, () -> "Other"));
+    }
+
+    @Test
+    void concurrentMissesRunLoaderOnce() throws Exception {
+        int callers = 8;
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> cache.get(1L, () -> {
+                    loaderCalls.incrementAndGet();
+                    loaderStarted.countDown();
+                    release.await();
+                    return "Loaded";
+                })));
+            }
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+            // остальные вызовы либо ждут загрузчика, либо ещё не начались - в обоих случаях БД не трогают
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("Loaded", result.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, meterRegistry.get("cache.loads").timer().count());
+    }
+
+    @Test
+    void loaderExceptionIsNotCached() {
+        assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get(1L, () -> {
+                    throw new IllegalArgumentException("User not found");
+                }));
+
+        assertEquals("Loaded", cache.get(1L, () -> "Loaded"));
+    }
+
+    // загрузчик прочитал строку до коммита, инвалидация пришла, пока он работал
+    @Test
+    void evictDuringLoadKeepsLoadedValueOutOfCache() {
+        assertEquals("Old", cache.get(1L, () -> {
+            cache.evict(1L);
+            return "Old";
+        }));
+
+        assertNull(remote.get(1L));
+        assertNull(cache.get(1L));
+        assertEquals("New", cache.get(1L, () -> "New"));
+        assertEquals(1, meterRegistry.get("cache.loads.discarded").counter().count());
+    }
+
+    @Test
+    void evictDuringBackgroundRefreshIsNotOverwritten() {
+        TwoLevelCache ttlCache = new TwoLevelCache("users", remote,
+                Caffeine.newBuilder().maximumSize(100).build(), invalidationBus, null, null, meterRegistry,
+                new EarlyRefreshPolicy(Duration.ZERO, 1.0), Runnable::run, null, null);
+        ttlCache.put(1L, "Old");
+
+        assertEquals("Old", ttlCache.get(1L, () -> {
+            ttlCache.evict(1L);
+            return "Stale";
+        }));
+
+        assertNull(remote.get(1L));
+        assertNull(ttlCache.get(1L));
+    }
+
+    @Test
+    void expiredEntryIsServedStaleAndRefreshedInBackground() {
+        // ttl = 0: любая запись уже логически истекла, но ещё лежит в L2
+        TwoLevelCache ttlCache = new TwoLevelCache("users", remote,
+                Caffeine.newBuilder().maximumSize(100).build(), invalidationBus, null, null, meterRegistry,
+                new EarlyRefreshPolicy(Duration.ZERO, 1.0), Runnable::run, null, null);
+        ttlCache.put(1L, "Old");
+
+        assertEquals("Old", ttlCache.get(1L, () -> "New"));
+
+        assertEquals("New", ttlCache.get(1L, String.class));
+        assertEquals("New", ((CacheEntry) remote.get(1L).get()).value());
+        assertEquals(1, meterRegistry.get("cache.refreshes").tag("result", "success").counter().count());
+    }
+
+    @Test
+    void freshEntryIsNotRefreshed() {
+        TwoLevelCache ttlCache = new TwoLevelCache("users", remote,
+                Caffeine.newBuilder().maximumSize(100).build(), invalidationBus, null, null, meterRegistry,
+                new EarlyRefreshPolicy(Duration.ofMinutes(10), 1.0), Runnable::run, null, null);
+        ttlCache.put(1L, "Old");
+
+        assertEquals("Old", ttlCache.get(1L, () -> "New"));
+        assertEquals("Old", ttlCache.get(1L, String.class));
+    }
+
+    @Test
+    void failedRefreshKeepsStaleValue() {
+        TwoLevelCache ttlCache = new TwoLevelCache("users", remote,
+                Caffeine.newBuilder().maximumSize(100).build(), invalidationBus, null, null, meterRegistry,
+                new EarlyRefreshPolicy(Duration.ZERO, 1.0), Runnable::run, null, null);
+        ttlCache.put(1L, "Old");
+
+        assertEquals("Old", ttlCache.get(1L, () -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertEquals("Old", ttlCache.get(1L, String.class));
+        assertEquals(1, meterRegistry.get("cache.refreshes").tag("result", "failure").counter().count());
+    }
+
+    @Test
+    void hitsAndMissesAreCountedPerLevel() {
+        remote.put(1L, "John");
+
+        cache.get(1L);   // L2
+        cache.get(1L);   // L1
+        cache.get(2L);   // промах
+
+        assertEquals(1, meterRegistry.get("cache.gets").tags("result", "hit", "level", "remote").counter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("result", "hit", "level", "local").counter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("result", "miss").counter().count());
+
+        CacheStatsDto stats = cache.stats(5, 100, 10);
+        assertEquals(2.0 / 3, stats.getHitRatio(), 1e-9);
+        assertEquals(1, stats.getLocalSize());
+        assertNull(stats.getRemoteKeys()); // remote не Redis
+    }
+
+    @Test
+    void getAllReturnsOnlyPresentKeys() {
+        remote.put(1L, "John");
+        cache.put(2L, "Anna");
+
+        Map<Object, Object> found = cache.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(Map.of(1L, "John", 2L, "Anna"), found);
+    }
+
+    @Test
+    void loadAllFillsBothLevelsWithoutPublishing() {
+        Map<Long, String> loaded = cache.loadAll(List.of(1L, 2L, 3L), keys -> Map.of(1L, "John", 2L, "Anna"));
+
+        assertEquals(Map.of(1L, "John", 2L, "Anna"), loaded);
+        assertEquals("John", remote.get(1L, String.class));
+        assertEquals("Anna", cache.get(2L, String.class));
+        assertNull(remote.get(3L));
+        verifyNoInteractions(invalidationBus);
+    }
+
+    // пакетный запрос прочитал строку до коммита, инвалидация пришла до записи в кэш
+    @Test
+    void evictDuringBatchLoadKeepsLoadedValueOutOfCache() {
+        Map<Long, String> loaded = cache.loadAll(List.of(1L, 2L), keys -> {
+            cache.evict(1L);
+            return Map.of(1L, "Old", 2L, "Anna");
+        });
+
+        assertEquals("Old", loaded.get(1L));
+        assertNull(remote.get(1L));
+        assertNull(cache.get(1L));
+        assertEquals("Anna", cache.get(2L, String.class));
+        assertEquals(1, meterRegistry.get("cache.loads.discarded").counter().count());
+    }
+
+    @Test
+    void clearWithGenerationsBumpsInsteadOfDeletingKeys() {
+        CacheGenerations generations = mock(CacheGenerations.class);
+        TwoLevelCache generationCache = new TwoLevelCache("users", remote,
+                Caffeine.newBuilder().maximumSize(100).build(), invalidationBus, null, null, meterRegistry,
+                null, Runnable::run, generations, null);
+        generationCache.put(1L, "John");
+
+        generationCache.clear();
+
+        verify(generations).bump("users");
+        assertEquals("John", remote.get(1L, String.class)); // старое поколение не трогаем - уйдёт по TTL
+        verify(invalidationBus).publishClear("users");
+    }
+
+    @Test
+    void clearPublishesClear() {
+        cache.put(1L, "John");
+
+        cache.clear();
+
+        assertNull(cache.get(1L));
+        verify(invalidationBus).publishClear("users");
+    }
+}
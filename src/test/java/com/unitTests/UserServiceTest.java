@@ -1,27 +1,42 @@
 package com.unitTests;
 
 import com.accessChecker.AccessChecker;
+import com.changeEvents.ChangeEventPublisher;
+import com.dto.PaymentCardDto;
 import com.dto.UserDto;
+import com.dto.UserPatchDto;
 import com.entities.User;
+import com.enums.ChangeType;
 import com.mappers.UserMapper;
 import com.repositories.UserRep;
 import com.services.UserService;
 import jakarta.persistence.EntityNotFoundException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.core.serializer.support.SerializationDelegate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +51,12 @@ class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private ChangeEventPublisher changeEvents;
+
     @InjectMocks
     private UserService userService;
 
@@ -76,8 +97,7 @@ class UserServiceTest {
                 .active(true)
                 .build();
 
-        when(userRepository.findByEmail(dto.getEmail())).thenReturn(Optional.empty());
-        when(userRepository.save(any())).thenReturn(savedUser);
+        when(userRepository.saveAndFlush(any())).thenReturn(savedUser);
 
         when(userMapper.toEntity(dto)).thenReturn(savedUser);
         when(userMapper.toDto(savedUser)).thenReturn(resultDto);
@@ -88,27 +108,60 @@ class UserServiceTest {
 
         assertEquals(dto.getEmail(), result.getEmail());
         assertTrue(result.getActive());
+        verify(changeEvents).userChanged(savedUser, ChangeType.CREATED);
     }
 
     @Test
     void createUserDuplicateEmail() {
-        when(userRepository.findByEmail(dto.getEmail())).thenReturn(Optional.of(user));
+        when(userMapper.toEntity(dto)).thenReturn(user);
+        when(userRepository.saveAndFlush(any())).thenThrow(violation("23505", "users_email_key"));
 
-        assertThrows(IllegalStateException.class,
+        Exception ex = assertThrows(IllegalStateException.class,
                 () -> userService.createUser(dto, Set.of("ROLE_ADMIN"), false));
+        assertEquals("User with this email already exists", ex.getMessage());
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    // NOT NULL, длина, FK - не дубликат email
+    @Test
+    void createUserOtherIntegrityViolationIsRethrown() {
+        DataIntegrityViolationException notNull = violation("23502", null);
+        when(userMapper.toEntity(dto)).thenReturn(user);
+        when(userRepository.saveAndFlush(any())).thenThrow(notNull);
+
+        assertSame(notNull, assertThrows(DataIntegrityViolationException.class,
+                () -> userService.createUser(dto, Set.of("ROLE_ADMIN"), false)));
     }
 
     @Test
     void getUserByIdNotFound() {
-        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+        when(cacheManager.getCache("users")).thenReturn(new ConcurrentMapCache("users"));
+        when(cacheManager.getCache("missingUsers")).thenReturn(new ConcurrentMapCache("missingUsers"));
+        when(userRepository.findWithCardsById(1L)).thenReturn(Optional.empty());
 
         assertThrows(EntityNotFoundException.class,
                 () -> userService.getUserById(1L, 1L, Set.of("ROLE_USER")));
     }
 
+    @Test
+    void getUserByIdNotFoundIsCached() {
+        when(cacheManager.getCache("users")).thenReturn(new ConcurrentMapCache("users"));
+        when(cacheManager.getCache("missingUsers")).thenReturn(new ConcurrentMapCache("missingUsers"));
+        when(userRepository.findWithCardsById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class,
+                () -> userService.getUserById(1L, 1L, Set.of("ROLE_USER")));
+        assertThrows(EntityNotFoundException.class,
+                () -> userService.getUserById(1L, 1L, Set.of("ROLE_USER")));
+
+        verify(userRepository).findWithCardsById(1L);
+    }
+
     @Test
     void getUserById() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(cacheManager.getCache("users")).thenReturn(new ConcurrentMapCache("users"));
+        when(cacheManager.getCache("missingUsers")).thenReturn(new ConcurrentMapCache("missingUsers"));
+        when(userRepository.findWithCardsById(1L)).thenReturn(Optional.of(user));
         when(userMapper.toDto(user)).thenReturn(dto);
 
         doNothing().when(accessChecker).checkUserAccess(any(), any(), any());
@@ -118,11 +171,58 @@ class UserServiceTest {
         assertEquals(dto.getEmail(), result.getEmail());
     }
 
+    // кэш с копированием через JDK-сериализацию, как Redis: DTO с картами должен сериализоваться целиком
+    @Test
+    void getUserByIdWithCardsSurvivesSerializingCache() {
+        ConcurrentMapCache usersCache = new ConcurrentMapCache("users", new ConcurrentHashMap<>(), true,
+                new SerializationDelegate(getClass().getClassLoader()));
+        UserDto withCards = dto.toBuilder()
+                .id(1L)
+                .paymentCards(List.of(PaymentCardDto.builder().id(10L).userId(1L).number("1234567890123").build()))
+                .build();
+        when(cacheManager.getCache("users")).thenReturn(usersCache);
+        when(cacheManager.getCache("missingUsers")).thenReturn(new ConcurrentMapCache("missingUsers"));
+        when(userRepository.findWithCardsById(1L)).thenReturn(Optional.of(user));
+        when(userMapper.toDto(user)).thenReturn(withCards);
+
+        assertEquals(withCards, userService.getUserById(1L, 1L, Set.of("ROLE_USER")));
+        assertEquals(withCards, usersCache.get(1L, UserDto.class));
+    }
+
+    @Test
+    void getUserByIdCacheHitStillChecksAccess() {
+        ConcurrentMapCache usersCache = new ConcurrentMapCache("users");
+        usersCache.put(1L, dto);
+        when(cacheManager.getCache("users")).thenReturn(usersCache);
+
+        UserDto result = userService.getUserById(1L, 1L, Set.of("ROLE_USER"));
+
+        assertSame(dto, result);
+        verify(accessChecker).checkUserAccess(1L, 1L, Set.of("ROLE_USER"));
+        verify(userRepository, never()).findWithCardsById(any());
+    }
+
+    @Test
+    void getUsersByIdsLoadsOnlyMissesAndKeepsOrder() {
+        ConcurrentMapCache usersCache = new ConcurrentMapCache("users");
+        UserDto cachedDto = dto.toBuilder().id(2L).build();
+        usersCache.put(2L, cachedDto);
+        when(cacheManager.getCache("users")).thenReturn(usersCache);
+        when(userRepository.findWithCardsByIdIn(List.of(1L, 3L))).thenReturn(List.of(user));
+        UserDto loadedDto = dto.toBuilder().id(1L).build();
+        when(userMapper.toDto(user)).thenReturn(loadedDto);
+
+        List<UserDto> result = userService.getUsersByIds(List.of(1L, 2L, 3L, 1L), 1L, Set.of("ROLE_ADMIN"));
+
+        assertEquals(List.of(loadedDto, cachedDto), result);
+        assertSame(loadedDto, usersCache.get(1L, UserDto.class));
+    }
+
     @Test
     void updateUser() {
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(userRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(userRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
         when(userMapper.toDto(user)).thenReturn(dto);
 
         doNothing().when(accessChecker).checkUserAccess(any(), any(), any());
@@ -130,5 +230,40 @@ class UserServiceTest {
         UserDto result = userService.updateUser(1L, dto, 1L, Set.of("ROLE_USER"));
 
         assertEquals(dto.getName(), result.getName());
+        verify(changeEvents).userChanged(user, ChangeType.UPDATED);
+    }
+
+    @Test
+    void patchUserKeepsCachedCards() {
+        ConcurrentMapCache usersCache = new ConcurrentMapCache("users");
+        List<PaymentCardDto> cards = List.of(PaymentCardDto.builder().id(10L).userId(1L).build());
+        usersCache.put(1L, dto.toBuilder().id(1L).version(0L).paymentCards(cards).build());
+        UserDto patchedDto = dto.toBuilder().id(1L).surname("Smith").version(1L).build();
+
+        when(userRepository.patchUser(1L, null, "Smith", null, null, 0L)).thenReturn(Optional.of(user));
+        when(userMapper.toSummaryDto(user)).thenReturn(patchedDto);
+        when(cacheManager.getCache("users")).thenReturn(usersCache);
+
+        UserDto result = userService.patchUser(1L,
+                UserPatchDto.builder().surname("Smith").version(0L).build(), 1L, Set.of("ROLE_USER"));
+
+        assertEquals(cards, result.getPaymentCards());
+        assertSame(result, usersCache.get(1L, UserDto.class));
+        verify(changeEvents).userChanged(user, ChangeType.UPDATED);
+    }
+
+    private static DataIntegrityViolationException violation(String sqlState, String constraint) {
+        return new DataIntegrityViolationException("could not execute statement", new ConstraintViolationException(
+                "constraint violation", new SQLException("error", sqlState), constraint));
+    }
+
+    @Test
+    void patchUserWithStaleVersion() {
+        when(userRepository.patchUser(1L, "Jane", null, null, null, 3L)).thenReturn(Optional.empty());
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.patchUser(1L,
+                UserPatchDto.builder().name("Jane").version(3L).build(), 1L, Set.of("ROLE_USER")));
+        verify(changeEvents, never()).userChanged(any(), any());
     }
 }